@@ -1,15 +1,40 @@
 package de.eseidinger.algos.complexity;
 
 public class AstNode {
-    enum Type { AND, OR, NOT, IDENTIFIER }
+    enum Type { AND, OR, NOT, IDENTIFIER, TRUE, FALSE }
     Type type;
     AstNode left;
     AstNode right;
-    Token operator;
     AstNode operand;
     String value;
+    int symbol = -1;
+    int id = -1;
 
     AstNode(Type type) {
         this.type = type;
     }
+
+    static AstNode identifier(int symbol, String value) {
+        AstNode node = new AstNode(Type.IDENTIFIER);
+        node.symbol = symbol;
+        node.value = value;
+        return node;
+    }
+
+    static AstNode constant(boolean value) {
+        return new AstNode(value ? Type.TRUE : Type.FALSE);
+    }
+
+    static AstNode not(AstNode operand) {
+        AstNode node = new AstNode(Type.NOT);
+        node.operand = operand;
+        return node;
+    }
+
+    static AstNode binary(Type type, AstNode left, AstNode right) {
+        AstNode node = new AstNode(type);
+        node.left = left;
+        node.right = right;
+        return node;
+    }
 }
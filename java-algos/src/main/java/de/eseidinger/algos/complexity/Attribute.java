@@ -1,18 +1,40 @@
 package de.eseidinger.algos.complexity;
 
+import java.util.Objects;
+
 public class Attribute {
     private final String symbol;
+    private final int symbolId;
     private final Boolean value;
 
     public Attribute(String symbol, Boolean value) {
+        this(SymbolTable.global().intern(symbol), symbol, value);
+    }
+
+    private Attribute(int symbolId, String symbol, Boolean value) {
         this.symbol = symbol;
+        this.symbolId = symbolId;
         this.value = value;
     }
 
+    /**
+     * Attribute of the symbol with global id {@code symbolId}, without interning the name again.
+     */
+    static Attribute of(int symbolId, Boolean value) {
+        return new Attribute(symbolId, SymbolTable.global().name(symbolId), value);
+    }
+
     public String getSymbol() {
         return symbol;
     }
 
+    /**
+     * Id of the symbol in {@link SymbolTable#global()}.
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
     public Boolean getValue() {
         return value;
     }
@@ -27,11 +49,11 @@ public class Attribute {
         if (this == obj) return true;
         if (!(obj instanceof Attribute)) return false;
         Attribute other = (Attribute) obj;
-        return symbol.equals(other.symbol) && value.equals(other.value);
+        return symbolId == other.symbolId && Objects.equals(value, other.value);
     }
 
     @Override
     public int hashCode() {
-        return 31 * symbol.hashCode() + (value != null ? value.hashCode() : 0);
+        return 31 * symbolId + (value != null ? value.hashCode() : 0);
     }
 }
@@ -0,0 +1,412 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduced ordered binary decision diagrams. Nodes are ints into a node table shared by all
+ * functions of the manager; {@link #FALSE} and {@link #TRUE} are the terminals. A unique table
+ * keeps every (variable, low, high) triple once, so equal functions are equal ints, and a
+ * direct-mapped computed cache memoizes ITE, restriction and quantification results. Variables are
+ * ordered by the level they were first requested at; nodes are never freed, so a manager is meant
+ * to live as long as the model whose conditions it holds.
+ * <p>
+ * Operations are synchronized; {@link #evaluate(int, Map)} walks published nodes without locking.
+ */
+public final class BddManager {
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    private static final int TERMINAL_LEVEL = Integer.MAX_VALUE;
+    private static final int DEFAULT_CACHE_BITS = 16;
+
+    private static final int OP_ITE = 0;
+    private static final int OP_EXISTS = 1;
+    private static final int OP_RESTRICT = 2;
+
+    private volatile int[] nodes = new int[3 * 1024];
+    private int size;
+    private int[] unique = new int[2048];
+    private final int[] cache;
+    private final int cacheMask;
+    private final Map<String, Integer> levels = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private volatile String[] levelNames = new String[0];
+    private volatile int[] levelSymbolIds = new int[0];
+
+    public BddManager() {
+        this(List.of());
+    }
+
+    /**
+     * Creates a manager whose first levels are {@code variableOrder}; further variables are
+     * appended when first used.
+     */
+    public BddManager(List<String> variableOrder) {
+        int entries = 1 << DEFAULT_CACHE_BITS;
+        cache = new int[5 * entries];
+        Arrays.fill(cache, -1);
+        cacheMask = entries - 1;
+        nodes[0] = TERMINAL_LEVEL;
+        nodes[3] = TERMINAL_LEVEL;
+        size = 2;
+        for (String name : variableOrder) {
+            level(name);
+        }
+    }
+
+    /**
+     * Number of nodes in the manager, including the two terminals.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized List<String> getVariableOrder() {
+        return List.copyOf(names);
+    }
+
+    public synchronized int variable(String name) {
+        return mk(level(name), FALSE, TRUE);
+    }
+
+    private int level(String name) {
+        Integer level = levels.get(name);
+        if (level == null) {
+            level = names.size();
+            levels.put(name, level);
+            names.add(name);
+            levelNames = names.toArray(new String[0]);
+            int[] symbolIds = Arrays.copyOf(levelSymbolIds, level + 1);
+            symbolIds[level] = SymbolTable.global().intern(name);
+            levelSymbolIds = symbolIds;
+        }
+        return level;
+    }
+
+    /**
+     * Builds the function of {@code expression}; shared subexpressions are converted once.
+     */
+    public synchronized int fromExpression(BooleanExpression expression) {
+        return fromAst(expression.getAst(), new IdentityHashMap<>());
+    }
+
+    private int fromAst(AstNode node, Map<AstNode, Integer> converted) {
+        Integer result = converted.get(node);
+        if (result != null) {
+            return result;
+        }
+        int function = switch (node.type) {
+            case TRUE -> TRUE;
+            case FALSE -> FALSE;
+            case IDENTIFIER -> mk(level(node.value), FALSE, TRUE);
+            case NOT -> ite(fromAst(node.operand, converted), FALSE, TRUE);
+            case AND -> {
+                int left = fromAst(node.left, converted);
+                yield ite(left, fromAst(node.right, converted), FALSE);
+            }
+            case OR -> {
+                int left = fromAst(node.left, converted);
+                yield ite(left, TRUE, fromAst(node.right, converted));
+            }
+        };
+        converted.put(node, function);
+        return function;
+    }
+
+    public synchronized int not(int f) {
+        return ite(f, FALSE, TRUE);
+    }
+
+    public synchronized int and(int f, int g) {
+        return ite(f, g, FALSE);
+    }
+
+    public synchronized int or(int f, int g) {
+        return ite(f, TRUE, g);
+    }
+
+    /**
+     * If-then-else: {@code (f & g) | (!f & h)}.
+     */
+    public synchronized int ite(int f, int g, int h) {
+        if (f == TRUE) {
+            return g;
+        }
+        if (f == FALSE) {
+            return h;
+        }
+        if (g == h) {
+            return g;
+        }
+        if (g == TRUE && h == FALSE) {
+            return f;
+        }
+        int cached = lookup(OP_ITE, f, g, h);
+        if (cached >= 0) {
+            return cached;
+        }
+        int[] table = nodes;
+        int top = Math.min(table[3 * f], Math.min(table[3 * g], table[3 * h]));
+        int low = ite(cofactor(f, top, false), cofactor(g, top, false), cofactor(h, top, false));
+        int high = ite(cofactor(f, top, true), cofactor(g, top, true), cofactor(h, top, true));
+        int result = mk(top, low, high);
+        store(OP_ITE, f, g, h, result);
+        return result;
+    }
+
+    private int cofactor(int f, int level, boolean value) {
+        int[] table = nodes;
+        if (table[3 * f] != level) {
+            return f;
+        }
+        return value ? table[3 * f + 2] : table[3 * f + 1];
+    }
+
+    /**
+     * Existentially quantifies {@code variables}: the result is true for an assignment of the
+     * remaining variables iff some assignment of {@code variables} makes {@code f} true.
+     */
+    public synchronized int exists(int f, Collection<String> variables) {
+        return exists(f, cube(variables));
+    }
+
+    private int cube(Collection<String> variables) {
+        boolean[] quantified = new boolean[names.size() + variables.size()];
+        for (String name : variables) {
+            quantified[level(name)] = true;
+        }
+        int cube = TRUE;
+        for (int level = names.size() - 1; level >= 0; level--) {
+            if (quantified[level]) {
+                cube = mk(level, FALSE, cube);
+            }
+        }
+        return cube;
+    }
+
+    private int exists(int f, int cube) {
+        int[] table = nodes;
+        int level = table[3 * f];
+        while (cube != TRUE && table[3 * cube] < level) {
+            cube = table[3 * cube + 2];
+        }
+        if (cube == TRUE || level == TERMINAL_LEVEL) {
+            return f;
+        }
+        int cached = lookup(OP_EXISTS, f, cube, 0);
+        if (cached >= 0) {
+            return cached;
+        }
+        int result;
+        if (table[3 * cube] == level) {
+            int rest = table[3 * cube + 2];
+            int low = exists(table[3 * f + 1], rest);
+            result = low == TRUE ? TRUE : ite(low, TRUE, exists(table[3 * f + 2], rest));
+        } else {
+            result = mk(level, exists(table[3 * f + 1], cube), exists(table[3 * f + 2], cube));
+        }
+        store(OP_EXISTS, f, cube, 0, result);
+        return result;
+    }
+
+    /**
+     * Substitutes the given values; variables not in {@code assignment} stay free.
+     */
+    public synchronized int restrict(int f, Map<String, Boolean> assignment) {
+        boolean[] assigned = new boolean[names.size() + assignment.size()];
+        boolean[] values = new boolean[assigned.length];
+        for (Map.Entry<String, Boolean> entry : assignment.entrySet()) {
+            if (entry.getValue() != null) {
+                int level = level(entry.getKey());
+                assigned[level] = true;
+                values[level] = entry.getValue();
+            }
+        }
+        int literals = TRUE;
+        for (int level = names.size() - 1; level >= 0; level--) {
+            if (assigned[level]) {
+                literals = values[level] ? mk(level, FALSE, literals) : mk(level, literals, FALSE);
+            }
+        }
+        return restrict(f, literals);
+    }
+
+    private int restrict(int f, int literals) {
+        int[] table = nodes;
+        int level = table[3 * f];
+        while (literals != TRUE && table[3 * literals] < level) {
+            literals = next(table, literals);
+        }
+        if (literals == TRUE || level == TERMINAL_LEVEL) {
+            return f;
+        }
+        int cached = lookup(OP_RESTRICT, f, literals, 0);
+        if (cached >= 0) {
+            return cached;
+        }
+        int result;
+        if (table[3 * literals] == level) {
+            boolean value = table[3 * literals + 1] == FALSE;
+            result = restrict(table[3 * f + (value ? 2 : 1)], next(table, literals));
+        } else {
+            result = mk(level, restrict(table[3 * f + 1], literals), restrict(table[3 * f + 2], literals));
+        }
+        store(OP_RESTRICT, f, literals, 0, result);
+        return result;
+    }
+
+    private static int next(int[] table, int literals) {
+        int low = table[3 * literals + 1];
+        return low == FALSE ? table[3 * literals + 2] : low;
+    }
+
+    /**
+     * Follows the single path selected by {@code assignment}.
+     *
+     * @throws IllegalArgumentException if the path reaches a variable {@code assignment} does not define
+     */
+    public boolean evaluate(int f, Map<String, Boolean> assignment) {
+        int[] table = nodes;
+        String[] variableNames = levelNames;
+        while (f > TRUE) {
+            String name = variableNames[table[3 * f]];
+            Boolean value = assignment.get(name);
+            if (value == null) {
+                throw new IllegalArgumentException("Identifier \"" + name + "\" is not defined in the context");
+            }
+            f = table[3 * f + (value ? 2 : 1)];
+        }
+        return f == TRUE;
+    }
+
+    /**
+     * {@link #evaluate(int, Map)} on the assignment of {@code variant}, looking variables up by
+     * their global symbol id.
+     */
+    public boolean evaluate(int f, Variant variant) {
+        int[] table = nodes;
+        int[] symbolIds = levelSymbolIds;
+        while (f > TRUE) {
+            int level = table[3 * f];
+            Boolean value = variant.getValue(symbolIds[level]);
+            if (value == null) {
+                throw new IllegalArgumentException("Identifier \"" + levelNames[level] + "\" is not defined in the context");
+            }
+            f = table[3 * f + (value ? 2 : 1)];
+        }
+        return f == TRUE;
+    }
+
+    /**
+     * Variables {@code f} depends on, in variable order.
+     */
+    public synchronized List<String> support(int f) {
+        boolean[] visited = new boolean[size];
+        boolean[] used = new boolean[names.size()];
+        collectSupport(f, visited, used);
+        List<String> support = new ArrayList<>();
+        for (int level = 0; level < used.length; level++) {
+            if (used[level]) {
+                support.add(names.get(level));
+            }
+        }
+        return support;
+    }
+
+    private void collectSupport(int f, boolean[] visited, boolean[] used) {
+        if (f <= TRUE || visited[f]) {
+            return;
+        }
+        visited[f] = true;
+        used[nodes[3 * f]] = true;
+        collectSupport(nodes[3 * f + 1], visited, used);
+        collectSupport(nodes[3 * f + 2], visited, used);
+    }
+
+    /**
+     * Number of nodes reachable from {@code f}, terminals included.
+     */
+    public synchronized int nodeCount(int f) {
+        boolean[] visited = new boolean[size];
+        return countNodes(f, visited);
+    }
+
+    private int countNodes(int f, boolean[] visited) {
+        if (visited[f]) {
+            return 0;
+        }
+        visited[f] = true;
+        return f <= TRUE ? 1 : 1 + countNodes(nodes[3 * f + 1], visited) + countNodes(nodes[3 * f + 2], visited);
+    }
+
+    private int mk(int level, int low, int high) {
+        if (low == high) {
+            return low;
+        }
+        int mask = unique.length - 1;
+        int slot = hash(level, low, high) & mask;
+        int[] table = nodes;
+        while (unique[slot] != 0) {
+            int node = unique[slot];
+            if (table[3 * node] == level && table[3 * node + 1] == low && table[3 * node + 2] == high) {
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (3 * (size + 1) > table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        int node = size++;
+        table[3 * node] = level;
+        table[3 * node + 1] = low;
+        table[3 * node + 2] = high;
+        nodes = table;
+        unique[slot] = node;
+        if (2 * size > unique.length) {
+            rehash();
+        }
+        return node;
+    }
+
+    private void rehash() {
+        int[] table = nodes;
+        unique = new int[unique.length * 2];
+        int mask = unique.length - 1;
+        for (int node = 2; node < size; node++) {
+            int slot = hash(table[3 * node], table[3 * node + 1], table[3 * node + 2]) & mask;
+            while (unique[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            unique[slot] = node;
+        }
+    }
+
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b;
+        h = h * 0x85EBCA77 + c;
+        return h ^ (h >>> 15);
+    }
+
+    private int lookup(int op, int a, int b, int c) {
+        int entry = 5 * (hash(a * 4 + op, b, c) & cacheMask);
+        if (cache[entry] == op && cache[entry + 1] == a && cache[entry + 2] == b && cache[entry + 3] == c) {
+            return cache[entry + 4];
+        }
+        return -1;
+    }
+
+    private void store(int op, int a, int b, int c, int result) {
+        int entry = 5 * (hash(a * 4 + op, b, c) & cacheMask);
+        cache[entry] = op;
+        cache[entry + 1] = a;
+        cache[entry + 2] = b;
+        cache[entry + 3] = c;
+        cache[entry + 4] = result;
+    }
+}
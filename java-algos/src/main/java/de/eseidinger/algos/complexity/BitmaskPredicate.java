@@ -0,0 +1,7 @@
+package de.eseidinger.algos.complexity;
+
+interface BitmaskPredicate {
+    boolean evaluate(long values);
+
+    boolean evaluate(long[] values);
+}
@@ -1,58 +1,429 @@
 package de.eseidinger.algos.complexity;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class BooleanExpression {
+    static final int MAX_BITMAP_IDENTIFIERS = 36;
+    static final String COMPILE_THRESHOLD_PROPERTY = "de.eseidinger.algos.complexity.compileThreshold";
+    static final String PROFILE_PROPERTY = "de.eseidinger.algos.complexity.profile";
+    static final String SIMPLIFY_PROPERTY = "de.eseidinger.algos.complexity.simplify";
+    static final int REORDER_INTERVAL = 1024;
+
+    static final long[] LOW_BIT_PATTERNS = {
+            0xAAAAAAAAAAAAAAAAL,
+            0xCCCCCCCCCCCCCCCCL,
+            0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L,
+            0xFFFF0000FFFF0000L,
+            0xFFFFFFFF00000000L
+    };
+
+    private static volatile int compileThreshold = Integer.getInteger(COMPILE_THRESHOLD_PROPERTY, -1);
+    private static volatile boolean profiling = Boolean.getBoolean(PROFILE_PROPERTY);
+    private static volatile boolean simplifying = Boolean.parseBoolean(System.getProperty(SIMPLIFY_PROPERTY, "true"));
+
     private final AstNode ast;
+    private final ExpressionStore store;
+    private final CompiledExpression sourceProgram;
+    private volatile CompiledExpression program;
+    private volatile BitmaskPredicate predicate;
+    private int evaluations;
+    private boolean generated;
+    private long[] profileCounters;
+    private long profiledEvaluations;
 
     public BooleanExpression(String expression) {
-        BooleanExpressionParser parser = new BooleanExpressionParser(expression);
-        this.ast = parser.parse();
+        this(parse(ParseCache.global(), expression, null));
     }
 
-    private boolean evaluateNode(AstNode node, Map<String, Boolean> context) {
-        switch (node.type) {
-            case IDENTIFIER -> {
-                if (!context.containsKey(node.value)) {
-                    throw new IllegalArgumentException("Identifier \"" + node.value + "\" is not defined in the context");
-                }
-                return context.get(node.value);
+    /**
+     * Parses {@code expression} into {@code store}, sharing its subexpressions with every other
+     * expression of the store.
+     */
+    public BooleanExpression(String expression, ExpressionStore store) {
+        this(parse(store.getParseCache(), expression, store));
+    }
+
+    private BooleanExpression(BooleanExpression parsed) {
+        this.ast = parsed.ast;
+        this.store = parsed.store;
+        this.sourceProgram = parsed.sourceProgram;
+        this.program = parsed.program;
+        this.predicate = parsed.predicate;
+        this.generated = parsed.predicate != parsed.program;
+    }
+
+    private BooleanExpression(AstNode ast, ExpressionStore store) {
+        this.ast = ast;
+        this.store = store;
+        this.sourceProgram = CompiledExpression.compile(ast);
+        this.program = sourceProgram;
+        this.predicate = program;
+    }
+
+    private static BooleanExpression parse(ParseCache cache, String expression, ExpressionStore store) {
+        boolean simplify = simplifying;
+        return cache.get(expression, simplify, source -> {
+            SymbolTable symbols = store != null ? store.getSymbolTable() : SymbolTable.global();
+            return create(new BooleanExpressionParser(source, symbols).parse(), store, simplify);
+        });
+    }
+
+    /**
+     * Simplifies {@code ast} if requested and only then interns it into {@code store}, so the
+     * store never holds nodes that exist only in the unsimplified tree.
+     */
+    private static BooleanExpression create(AstNode ast, ExpressionStore store, boolean simplify) {
+        AstNode result = simplify ? ExpressionSimplifier.simplify(ast, null) : ast;
+        return new BooleanExpression(store != null ? store.intern(result) : result, store);
+    }
+
+    /**
+     * Returns an expression for {@code expression}, parsing it only on a cache miss. The parse tree
+     * and compiled program are shared with the cached expression; profile, operand order and
+     * compile state are the caller's own.
+     */
+    public static BooleanExpression of(String expression) {
+        return new BooleanExpression(expression);
+    }
+
+    public static BooleanExpression of(String expression, ExpressionStore store) {
+        return new BooleanExpression(expression, store);
+    }
+
+    public ExpressionStore getStore() {
+        return store;
+    }
+
+    AstNode getAst() {
+        return ast;
+    }
+
+    CompiledExpression getProgram() {
+        return program;
+    }
+
+    /**
+     * Number of nodes of the expression tree, after simplification if it is enabled.
+     */
+    public long getNodeCount() {
+        return ExpressionSimplifier.countNodes(ast);
+    }
+
+    /**
+     * Controls whether parsed expressions are simplified before they are compiled (the default).
+     * Simplification folds constants and removes double negations, duplicate, absorbed and
+     * complementary operands; it never changes the value of an expression under a complete
+     * assignment, but identifiers it removes no longer need to be defined. Expressions parsed
+     * before a change keep their form; the parse caches hold both forms separately.
+     */
+    public static void setSimplifying(boolean enabled) {
+        simplifying = enabled;
+    }
+
+    public static boolean isSimplifying() {
+        return simplifying;
+    }
+
+    /**
+     * Enables generating a hidden class for expressions evaluated more than {@code threshold}
+     * times; a negative threshold (the default) keeps every expression interpreted.
+     */
+    public static void setCompileThreshold(int threshold) {
+        compileThreshold = threshold;
+    }
+
+    public static int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    BitmaskPredicate predicate() {
+        BitmaskPredicate current = predicate;
+        if (!generated) {
+            int threshold = compileThreshold;
+            if (threshold >= 0 && ++evaluations > threshold) {
+                current = generatePredicate();
             }
-            case NOT -> {
-                return !evaluateNode(node.operand, context);
+        }
+        return current;
+    }
+
+    /**
+     * Enables profiling: evaluations count per AND/OR node how often each operand decided the
+     * result, and every {@value #REORDER_INTERVAL} profiled evaluations the expression is
+     * recompiled so that the cheapest, most decisive operand of each node runs first. Satisfiability
+     * checks of partial assignments are profiled as well. Reordering only changes evaluation order,
+     * never results: a context with undefined identifiers is still evaluated in source order, so
+     * it fails exactly when an unprofiled expression would. Counters are not synchronized and may lose
+     * increments under concurrent evaluation.
+     */
+    public static void setProfiling(boolean enabled) {
+        profiling = enabled;
+    }
+
+    public static boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Returns the outcomes counted in profiling mode together with the current operand order.
+     */
+    public synchronized ExpressionProfile getProfile() {
+        CompiledExpression current = program;
+        long[] counters = profileCounters != null ? profileCounters.clone() : new long[4 * current.branchCount()];
+        return new ExpressionProfile(current, counters, profiledEvaluations);
+    }
+
+    public synchronized void resetProfile() {
+        profileCounters = null;
+        profiledEvaluations = 0;
+    }
+
+    /**
+     * Recompiles the expression with the operand order learned from the profile.
+     *
+     * @return whether the order changed
+     */
+    public synchronized boolean optimizeOrder() {
+        CompiledExpression current = program;
+        CompiledExpression reordered = current.reorder(getProfile().learnedOrder());
+        if (reordered == current) {
+            return false;
+        }
+        program = reordered;
+        predicate = reordered;
+        generated = false;
+        evaluations = 0;
+        return true;
+    }
+
+    private boolean evaluateProfiled(long[] values) {
+        boolean result = program.evaluateProfiled(values, profileCounters());
+        countProfiled();
+        return result;
+    }
+
+    private long[] profileCounters() {
+        long[] counters = profileCounters;
+        if (counters == null) {
+            counters = new long[4 * program.branchCount()];
+            profileCounters = counters;
+        }
+        return counters;
+    }
+
+    private void countProfiled() {
+        if (++profiledEvaluations % REORDER_INTERVAL == 0) {
+            optimizeOrder();
+        }
+    }
+
+    private synchronized BitmaskPredicate generatePredicate() {
+        if (!generated) {
+            BitmaskPredicate generatedPredicate = PredicateGenerator.generate(program);
+            if (generatedPredicate != null) {
+                predicate = generatedPredicate;
             }
-            case AND -> {
-                return evaluateNode(node.left, context) && evaluateNode(node.right, context);
+            generated = true;
+        }
+        return predicate;
+    }
+
+    public boolean evaluate(Map<String, Boolean> context) {
+        CompiledExpression current = program;
+        long[] values = new long[current.wordCount()];
+        long[] undefined = null;
+        for (int slot = 0; slot < current.slotCount(); slot++) {
+            Boolean value = context.get(current.symbol(slot));
+            if (value == null) {
+                if (undefined == null) {
+                    undefined = new long[values.length];
+                }
+                undefined[slot >>> 6] |= 1L << slot;
+            } else if (value) {
+                values[slot >>> 6] |= 1L << slot;
             }
-            case OR -> {
-                return evaluateNode(node.left, context) || evaluateNode(node.right, context);
+        }
+        if (undefined != null) {
+            return sourceProgram.evaluateChecked(values, undefined);
+        }
+        return profiling ? evaluateProfiled(values) : predicate().evaluate(values);
+    }
+
+    /**
+     * Kleene evaluation under a partial assignment: identifiers that {@code context} leaves
+     * undefined or maps to {@code null} are unknown. The result is {@link Truth#UNKNOWN} only if
+     * both values are still possible; operands are short-circuited as soon as they decide the
+     * result, so an unknown identifier behind a decided operand does not matter.
+     */
+    public Truth evaluatePartial(Map<String, Boolean> context) {
+        CompiledExpression current = program;
+        long[] known = new long[current.wordCount()];
+        long[] values = new long[known.length];
+        assign(current, context, known, values);
+        return switch (current.evaluateKleene(known, values) & CompiledExpression.KLEENE_RESULT_MASK) {
+            case CompiledExpression.KLEENE_TRUE -> Truth.TRUE;
+            case CompiledExpression.KLEENE_FALSE -> Truth.FALSE;
+            default -> Truth.UNKNOWN;
+        };
+    }
+
+    /**
+     * Whether some assignment of the identifiers {@code context} leaves unknown makes the
+     * expression true. The search only branches on unknown identifiers that the evaluation
+     * reaches, and stops at the first satisfying completion.
+     */
+    public boolean isSatisfiable(Map<String, Boolean> context) {
+        CompiledExpression current = program;
+        long[] known = new long[current.wordCount()];
+        long[] values = new long[known.length];
+        assign(current, context, known, values);
+        return existsCompletion(current, known, values);
+    }
+
+    /**
+     * {@link #isSatisfiable(Map)} for the assignment of {@code variant}, reading the value of every
+     * slot from the variant's bit masks by symbol id.
+     */
+    public boolean isSatisfiable(Variant variant) {
+        CompiledExpression current = program;
+        long[] known = new long[current.wordCount()];
+        long[] values = new long[known.length];
+        for (int slot = 0; slot < current.slotCount(); slot++) {
+            Boolean value = variant.getValue(current.globalSymbolId(slot));
+            if (value != null) {
+                known[slot >>> 6] |= 1L << slot;
+                if (value) {
+                    values[slot >>> 6] |= 1L << slot;
+                }
             }
-            default -> throw new IllegalArgumentException("Unknown node type \"" + node.type + "\"");
         }
+        return existsCompletion(current, known, values);
     }
 
-    public boolean evaluate(Map<String, Boolean> context) {
-        return evaluateNode(ast, context);
+    /**
+     * A complete assignment is evaluated like {@link #evaluate(long[])}, so it is profiled and
+     * counts towards the compile threshold; only a partial one needs the completion search.
+     */
+    private boolean existsCompletion(CompiledExpression current, long[] known, long[] values) {
+        int assigned = 0;
+        for (long word : known) {
+            assigned += Long.bitCount(word);
+        }
+        if (assigned == current.slotCount()) {
+            return evaluate(values);
+        }
+        if (!profiling) {
+            return current.existsCompletion(known, values);
+        }
+        boolean result = current.existsCompletion(known, values, profileCounters());
+        countProfiled();
+        return result;
+    }
+
+    private static void assign(CompiledExpression program, Map<String, Boolean> context, long[] known, long[] values) {
+        for (int slot = 0; slot < program.slotCount(); slot++) {
+            Boolean value = context.get(program.symbol(slot));
+            if (value != null) {
+                known[slot >>> 6] |= 1L << slot;
+                if (value) {
+                    values[slot >>> 6] |= 1L << slot;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates against a bitmask where bit {@code i} holds the value of {@code getSymbolSlots().get(i)}.
+     */
+    public boolean evaluate(long values) {
+        if (program.slotCount() > Long.SIZE) {
+            throw new IllegalArgumentException("Expression has " + program.slotCount() + " symbols, use evaluate(long[])");
+        }
+        return profiling ? evaluateProfiled(new long[] { values }) : predicate().evaluate(values);
+    }
+
+    public boolean evaluate(long[] values) {
+        return profiling ? evaluateProfiled(values) : predicate().evaluate(values);
+    }
+
+    public List<String> getSymbolSlots() {
+        return program.symbols();
     }
 
     public List<Integer> getMinterms(List<String> identifiers) {
-        List<String> reversedIdentifiers = new ArrayList<>(identifiers);
-        Collections.reverse(reversedIdentifiers);
+        if (identifiers.size() >= Integer.SIZE) {
+            throw new IllegalArgumentException("Minterms over " + identifiers.size() + " identifiers do not fit into an int");
+        }
+        long[] bitmap = getMintermBitmap(identifiers);
         List<Integer> minterms = new ArrayList<>();
+        for (int word = 0; word < bitmap.length; word++) {
+            long bits = bitmap[word];
+            while (bits != 0L) {
+                minterms.add((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return minterms;
+    }
+
+    /**
+     * Returns the truth table over {@code identifiers} as a bitmap: bit {@code m} of word
+     * {@code m / 64} is set iff minterm {@code m} satisfies the expression, where the first
+     * identifier is the most significant bit of {@code m}. The table is enumerated 64 assignments
+     * per pass by evaluating the program over pattern words.
+     */
+    public long[] getMintermBitmap(List<String> identifiers) {
         int numIdentifiers = identifiers.size();
+        if (numIdentifiers > MAX_BITMAP_IDENTIFIERS) {
+            throw new IllegalArgumentException("Truth table over " + numIdentifiers + " identifiers is too large");
+        }
+        int[] bitOfSlot = bitsOfSlots(identifiers);
 
-        for (int i = 0; i < (1 << numIdentifiers); i++) {
-            Map<String, Boolean> context = new HashMap<>();
-            for (int j = 0; j < numIdentifiers; j++) {
-                context.put(reversedIdentifiers.get(j), (i & (1 << j)) != 0);
+        int numWords = numIdentifiers <= 6 ? 1 : 1 << (numIdentifiers - 6);
+        long[] bitmap = new long[numWords];
+        long[] slotWords = new long[bitOfSlot.length];
+        long[] stack = new long[Math.max(program.maxStack(), 1)];
+        for (int slot = 0; slot < bitOfSlot.length; slot++) {
+            if (bitOfSlot[slot] < 6) {
+                slotWords[slot] = LOW_BIT_PATTERNS[bitOfSlot[slot]];
             }
-            if (evaluate(context)) {
-                minterms.add(i);
+        }
+        for (int word = 0; word < numWords; word++) {
+            for (int slot = 0; slot < bitOfSlot.length; slot++) {
+                int bit = bitOfSlot[slot];
+                if (bit >= 6) {
+                    slotWords[slot] = ((word >>> (bit - 6)) & 1) != 0 ? -1L : 0L;
+                }
             }
+            bitmap[word] = program.evaluateWords(slotWords, stack);
         }
+        if (numIdentifiers < 6) {
+            bitmap[0] &= (1L << (1 << numIdentifiers)) - 1;
+        }
+        return bitmap;
+    }
 
-        return minterms;
+    /**
+     * Returns the on-set over {@code identifiers} in the minterm layout of
+     * {@link #getMintermBitmap(List)}, without a limit on the number of minterms. Subspaces on
+     * which the expression is constant are kept as single cubes.
+     */
+    public MintermSet getMintermSet(List<String> identifiers) {
+        return MintermSet.enumerate(program, bitsOfSlots(identifiers), identifiers.size());
+    }
+
+    private int[] bitsOfSlots(List<String> identifiers) {
+        int numIdentifiers = identifiers.size();
+        int[] bitOfSlot = new int[program.slotCount()];
+        for (int slot = 0; slot < bitOfSlot.length; slot++) {
+            int index = identifiers.indexOf(program.symbol(slot));
+            if (index == -1) {
+                throw new IllegalArgumentException("Identifier \"" + program.symbol(slot) + "\" is not defined in the context");
+            }
+            bitOfSlot[slot] = numIdentifiers - 1 - index;
+        }
+        return bitOfSlot;
     }
 
     public List<String> getIdentifiers() {
@@ -66,6 +437,8 @@ public class BooleanExpression {
     private void collectIdentifiers(AstNode node, Set<String> identifiers) {
         switch (node.type) {
             case IDENTIFIER -> identifiers.add(node.value);
+            case TRUE, FALSE -> {
+            }
             case NOT -> collectIdentifiers(node.operand, identifiers);
             case AND, OR -> {
                 collectIdentifiers(node.left, identifiers);
@@ -74,23 +447,68 @@ public class BooleanExpression {
         }
     }
 
+    /**
+     * Builds a minimized sum of products for the given minterms, where bit {@code i} of a minterm
+     * is the value of {@code identifiers.get(i)}.
+     */
     public static BooleanExpression sopFromMinterms(List<Integer> minterms, List<String> identifiers) {
         int numIdentifiers = identifiers.size();
+        long[] bitmap = new long[numIdentifiers <= 6 ? 1 : 1 << (numIdentifiers - 6)];
+        for (int minterm : minterms) {
+            bitmap[minterm >>> 6] |= 1L << minterm;
+        }
+        return fromCover(LogicMinimizer.minimize(bitmap, numIdentifiers), identifiers, false);
+    }
+
+    /**
+     * Builds a minimized sum of products for a bitmap in the layout of {@link #getMintermBitmap(List)}.
+     */
+    public static BooleanExpression fromMintermBitmap(long[] bitmap, List<String> identifiers) {
+        return fromCover(LogicMinimizer.minimize(bitmap, identifiers.size()), identifiers, true);
+    }
+
+    /**
+     * Builds a sum of products for {@code minterms}, minimized exactly for narrow sets and by
+     * merging cubes for wide ones.
+     */
+    public static BooleanExpression fromMintermSet(MintermSet minterms, List<String> identifiers) {
+        if (minterms.numVariables() != identifiers.size()) {
+            throw new IllegalArgumentException("Minterm set over " + minterms.numVariables()
+                    + " variables does not match " + identifiers.size() + " identifiers");
+        }
+        return fromCover(LogicMinimizer.minimize(minterms), identifiers, true);
+    }
 
-        List<String> sopTerms = minterms.stream().map(minterm -> {
-            List<String> term = new ArrayList<>();
+    private static BooleanExpression fromCover(List<LogicMinimizer.Cube> cover, List<String> identifiers,
+            boolean firstIdentifierIsMostSignificant) {
+        if (cover.isEmpty() || cover.get(0).mask() == 0L) {
+            return create(AstNode.constant(!cover.isEmpty()), null, simplifying);
+        }
+        SymbolTable symbols = SymbolTable.global();
+        int numIdentifiers = identifiers.size();
+        AstNode[] literals = new AstNode[numIdentifiers];
+        for (int i = 0; i < numIdentifiers; i++) {
+            int symbol = symbols.intern(identifiers.get(i));
+            literals[i] = AstNode.identifier(symbol, symbols.name(symbol));
+        }
+        AstNode sum = null;
+        for (LogicMinimizer.Cube cube : cover) {
+            AstNode product = null;
             for (int i = 0; i < numIdentifiers; i++) {
-                if ((minterm & (1 << i)) != 0) {
-                    term.add(identifiers.get(i));
-                } else {
-                    term.add("!" + identifiers.get(i));
+                int bit = firstIdentifierIsMostSignificant ? numIdentifiers - 1 - i : i;
+                if ((cube.mask() & (1L << bit)) == 0L) {
+                    continue;
                 }
+                AstNode literal = (cube.values() & (1L << bit)) != 0L ? literals[i] : AstNode.not(literals[i]);
+                product = product == null ? literal : AstNode.binary(AstNode.Type.AND, product, literal);
             }
-            return "(" + String.join(" & ", term) + ")";
-        }).collect(Collectors.toList());
-
-        String sopExpression = String.join(" | ", sopTerms);
-
-        return new BooleanExpression(sopExpression);
+            sum = sum == null ? product : AstNode.binary(AstNode.Type.OR, sum, product);
+        }
+        return create(sum, null, simplifying);
     }
+
+    /**
+     * Three-valued result of {@link #evaluatePartial(Map)}.
+     */
+    public enum Truth { FALSE, TRUE, UNKNOWN }
 }
@@ -2,58 +2,131 @@ package de.eseidinger.algos.complexity;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class BooleanExpressionParser {
-    private List<Token> tokens = new ArrayList<>();
-    private int current = 0;
+    private static final Token.Type[] TOKEN_TYPES = Token.Type.values();
+    private static final int AND = Token.Type.AND.ordinal();
+    private static final int OR = Token.Type.OR.ordinal();
+    private static final int NOT = Token.Type.NOT.ordinal();
+    private static final int LPAREN = Token.Type.LPAREN.ordinal();
+    private static final int RPAREN = Token.Type.RPAREN.ordinal();
+    private static final int IDENTIFIER = Token.Type.IDENTIFIER.ordinal();
+    private static final int TRUE = Token.Type.TRUE.ordinal();
+    private static final int FALSE = Token.Type.FALSE.ordinal();
+
     private final String expression;
+    private final SymbolTable symbols;
+    private final ExpressionStore store;
+    private byte[] tokenTypes;
+    private int[] tokenStarts;
+    private int[] tokenSymbols;
+    private int tokenCount;
+    private int current = 0;
 
     public BooleanExpressionParser(String expression) {
+        this(expression, SymbolTable.global());
+    }
+
+    public BooleanExpressionParser(String expression, SymbolTable symbols) {
         this.expression = expression;
+        this.symbols = symbols;
+        this.store = null;
+    }
+
+    /**
+     * Creates a parser whose nodes are hash-consed in {@code store}, so identical subexpressions
+     * of all expressions parsed into the same store are shared.
+     */
+    public BooleanExpressionParser(String expression, ExpressionStore store) {
+        this.expression = expression;
+        this.symbols = store.getSymbolTable();
+        this.store = store;
     }
 
     public List<Token> getTokens() {
+        List<Token> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            Token.Type type = TOKEN_TYPES[tokenTypes[i]];
+            String value = type == Token.Type.IDENTIFIER
+                    ? symbols.name(tokenSymbols[i])
+                    : expression.substring(tokenStarts[i], tokenStarts[i] + 1);
+            tokens.add(new Token(type, value));
+        }
         return tokens;
     }
 
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
     private void tokenize() {
-        Pattern pattern = Pattern.compile("\\s*(&|\\||!|\\(|\\)|[A-Za-z_][A-Za-z0-9_]*)\\s*");
-        Matcher matcher = pattern.matcher(expression);
-
-        while (matcher.find()) {
-            String token = matcher.group(1);
-            switch (token) {
-                case "&" -> tokens.add(new Token(Token.Type.AND, token));
-                case "|" -> tokens.add(new Token(Token.Type.OR, token));
-                case "!" -> tokens.add(new Token(Token.Type.NOT, token));
-                case "(" -> tokens.add(new Token(Token.Type.LPAREN, token));
-                case ")" -> tokens.add(new Token(Token.Type.RPAREN, token));
-                default -> tokens.add(new Token(Token.Type.IDENTIFIER, token));
+        int length = expression.length();
+        tokenTypes = new byte[length];
+        tokenStarts = new int[length];
+        tokenSymbols = new int[length];
+        tokenCount = 0;
+
+        int position = 0;
+        while (position < length) {
+            char c = expression.charAt(position);
+            int type;
+            switch (c) {
+                case ' ', '\t', '\n', '\r', '\f' -> {
+                    position++;
+                    continue;
+                }
+                case '&' -> type = AND;
+                case '|' -> type = OR;
+                case '!' -> type = NOT;
+                case '(' -> type = LPAREN;
+                case ')' -> type = RPAREN;
+                case '1' -> type = TRUE;
+                case '0' -> type = FALSE;
+                default -> {
+                    if (!isIdentifierStart(c)) {
+                        throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + position);
+                    }
+                    type = IDENTIFIER;
+                }
+            }
+            tokenTypes[tokenCount] = (byte) type;
+            tokenStarts[tokenCount] = position;
+            if (type == IDENTIFIER) {
+                int end = position + 1;
+                while (end < length && isIdentifierPart(expression.charAt(end))) {
+                    end++;
+                }
+                tokenSymbols[tokenCount] = symbols.intern(expression, position, end);
+                position = end;
+            } else {
+                position++;
+                if ((type == TRUE || type == FALSE) && position < length && isIdentifierPart(expression.charAt(position))) {
+                    throw new IllegalArgumentException("Unexpected character '" + expression.charAt(position) + "' at position " + position);
+                }
             }
+            tokenCount++;
         }
     }
 
-    private Token peek() {
-        return current < tokens.size() ? tokens.get(current) : null;
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
     }
 
-    private Token consume() {
-        return current < tokens.size() ? tokens.get(current++) : null;
+    private int peek() {
+        return current < tokenCount ? tokenTypes[current] : -1;
     }
 
     private AstNode parseExpression() {
         AstNode node = parseTerm();
 
-        while (peek() != null && peek().type == Token.Type.OR) {
-            Token operator = consume();
+        while (peek() == OR) {
+            current++;
             AstNode right = parseTerm();
-            AstNode newNode = new AstNode(AstNode.Type.OR);
-            newNode.left = node;
-            newNode.operator = operator;
-            newNode.right = right;
-            node = newNode;
+            node = store != null ? store.or(node, right) : AstNode.binary(AstNode.Type.OR, node, right);
         }
 
         return node;
@@ -62,44 +135,40 @@ public class BooleanExpressionParser {
     private AstNode parseTerm() {
         AstNode node = parseFactor();
 
-        while (peek() != null && peek().type == Token.Type.AND) {
-            Token operator = consume();
+        while (peek() == AND) {
+            current++;
             AstNode right = parseFactor();
-            AstNode newNode = new AstNode(AstNode.Type.AND);
-            newNode.left = node;
-            newNode.operator = operator;
-            newNode.right = right;
-            node = newNode;
+            node = store != null ? store.and(node, right) : AstNode.binary(AstNode.Type.AND, node, right);
         }
 
         return node;
     }
 
     private AstNode parseFactor() {
-        if (peek() != null && peek().type == Token.Type.NOT) {
-            Token operator = consume();
+        if (peek() == NOT) {
+            current++;
             AstNode operand = parseFactor();
-            AstNode node = new AstNode(AstNode.Type.NOT);
-            node.operator = operator;
-            node.operand = operand;
-            return node;
+            return store != null ? store.not(operand) : AstNode.not(operand);
         }
 
-        if (peek() != null && peek().type == Token.Type.LPAREN) {
-            consume();
+        if (peek() == LPAREN) {
+            current++;
             AstNode node = parseExpression();
-            if (peek() == null || peek().type != Token.Type.RPAREN) {
+            if (peek() != RPAREN) {
                 throw new IllegalArgumentException("Expected closing parenthesis");
             }
-            consume();
+            current++;
             return node;
         }
 
-        Token token = consume();
-        if (token != null && token.type == Token.Type.IDENTIFIER) {
-            AstNode node = new AstNode(AstNode.Type.IDENTIFIER);
-            node.value = token.value;
-            return node;
+        if (peek() == TRUE || peek() == FALSE) {
+            boolean value = tokenTypes[current++] == TRUE;
+            return store != null ? store.constant(value) : AstNode.constant(value);
+        }
+
+        if (peek() == IDENTIFIER) {
+            int symbol = tokenSymbols[current++];
+            return store != null ? store.identifier(symbol) : AstNode.identifier(symbol, symbols.name(symbol));
         }
 
         throw new IllegalArgumentException("Unexpected token");
@@ -108,7 +177,7 @@ public class BooleanExpressionParser {
     public AstNode parse() {
         tokenize();
         AstNode ast = parseExpression();
-        if (current < tokens.size()) {
+        if (current < tokenCount) {
             throw new IllegalArgumentException("Unexpected input after parsing");
         }
         return ast;
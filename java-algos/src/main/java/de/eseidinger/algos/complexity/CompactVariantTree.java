@@ -0,0 +1,292 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable variant tree in primitive arrays, for trees too large for {@link VariantNode}
+ * objects. Nodes are ints in pre-order, the root being 0, so a subtree is a contiguous range. A
+ * node stores its parent, first child, next sibling, the index of its symbol group in the symbol
+ * order, the values it assigns to that group as bits and the offset of its conditionals in a
+ * shared pool of conditional indices; about 26 bytes per node. Variants are rebuilt from the root
+ * variant and the values along the path on demand.
+ */
+final class CompactVariantTree<T extends Conditional> {
+    private final Variant rootVariant;
+    private final List<List<String>> symbolOrder;
+    private final List<T> allConditionals;
+    private final int size;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final short[] level;
+    private final long[] values;
+    private final int[] conditionalStart;
+    private final int[] conditionalPool;
+
+    private CompactVariantTree(Builder<T> builder) {
+        this.rootVariant = builder.rootVariant;
+        this.symbolOrder = builder.symbolOrder;
+        this.allConditionals = builder.allConditionals;
+        this.size = builder.size;
+        this.parent = Arrays.copyOf(builder.parent, size);
+        this.firstChild = Arrays.copyOf(builder.firstChild, size);
+        this.nextSibling = Arrays.copyOf(builder.nextSibling, size);
+        this.level = Arrays.copyOf(builder.level, size);
+        this.values = Arrays.copyOf(builder.values, size);
+        this.conditionalStart = Arrays.copyOf(builder.conditionalStart, size + 1);
+        this.conditionalStart[size] = builder.pool.size();
+        this.conditionalPool = builder.pool.toArray();
+    }
+
+    /**
+     * Builds the tree {@link VariantNode#VariantNode(List, Variant, List, List, List)} would build.
+     */
+    public static <T extends Conditional> CompactVariantTree<T> build(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            List<Variant> possibleVariants,
+            List<T> allConditionals
+    ) {
+        return build(currentSymbols, variant, symbolOrder, DepthFirstBuilder.index(symbolOrder, possibleVariants), allConditionals);
+    }
+
+    /**
+     * {@link #build(List, Variant, List, List, List)} against possible variants that are already
+     * indexed or stored elsewhere.
+     */
+    public static <T extends Conditional> CompactVariantTree<T> build(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            PossibleVariants possibleVariants,
+            List<T> allConditionals
+    ) {
+        int rootLevel = DepthFirstBuilder.rootLevel(symbolOrder, currentSymbols);
+        Builder<T> builder = new Builder<>(variant, symbolOrder, possibleVariants, allConditionals);
+        builder.build(rootLevel);
+        return new CompactVariantTree<>(builder);
+    }
+
+    /**
+     * Number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * First child of {@code node}, -1 for a leaf.
+     */
+    public int getFirstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * Next child of the parent of {@code node}, -1 for the last one.
+     */
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public int[] getChildren(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            count++;
+        }
+        int[] children = new int[count];
+        count = 0;
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            children[count++] = child;
+        }
+        return children;
+    }
+
+    /**
+     * The symbols {@code node} assigns, empty for a root without a group.
+     */
+    public List<String> getCurrentSymbols(int node) {
+        return level[node] < 0 ? Collections.emptyList() : symbolOrder.get(level[node]);
+    }
+
+    /**
+     * The variant of {@code node}, derived from the root variant along the path to it.
+     */
+    public Variant getVariant(int node) {
+        Deque<Integer> path = new ArrayDeque<>();
+        for (int current = node; current > 0; current = parent[current]) {
+            path.push(current);
+        }
+        Variant variant = rootVariant;
+        for (int current : path) {
+            List<String> symbols = symbolOrder.get(level[current]);
+            boolean[] assigned = new boolean[symbols.size()];
+            for (int i = 0; i < assigned.length; i++) {
+                assigned[i] = ((values[current] >>> i) & 1L) != 0L;
+            }
+            variant = variant.deriveVariants(symbols, List.of(assigned)).get(0);
+        }
+        return variant;
+    }
+
+    /**
+     * The conditionals that hold at {@code node}; only final variants have any.
+     */
+    public List<T> getConditionals(int node) {
+        List<T> conditionals = new ArrayList<>(conditionalStart[node + 1] - conditionalStart[node]);
+        for (int i = conditionalStart[node]; i < conditionalStart[node + 1]; i++) {
+            conditionals.add(allConditionals.get(conditionalPool[i]));
+        }
+        return conditionals;
+    }
+
+    /**
+     * The leaves from left to right, in one pass over the nodes.
+     */
+    public int[] getLeafNodes() {
+        int count = 0;
+        for (int node = 0; node < size; node++) {
+            if (firstChild[node] < 0) {
+                count++;
+            }
+        }
+        int[] leaves = new int[count];
+        count = 0;
+        for (int node = 0; node < size; node++) {
+            if (firstChild[node] < 0) {
+                leaves[count++] = node;
+            }
+        }
+        return leaves;
+    }
+
+    /**
+     * {@code node} in the format of {@link VariantNode#toString()}.
+     */
+    public String toString(int node) {
+        String conditionalStr = getConditionals(node).stream().map(Object::toString).collect(Collectors.joining(", "));
+        String symbolStrings = String.join(", ", getCurrentSymbols(node));
+        return "[" + symbolStrings + "] -> " + getVariant(node) + " -> [" + conditionalStr + "]";
+    }
+
+    /**
+     * A node on the depth-first stack, numbered only when it is taken from there.
+     */
+    private record Pending(int parent, int level, Variant variant) {
+    }
+
+    /**
+     * Growing arrays of a tree under construction. Nodes are numbered when they are entered,
+     * which makes the numbering pre-order and lets each node append its conditionals to the pool
+     * in order.
+     */
+    private static final class Builder<T extends Conditional> extends DepthFirstBuilder<Pending> {
+        private final Variant rootVariant;
+        private final List<List<String>> symbolOrder;
+        private final List<T> allConditionals;
+        private final int[][] groupIds;
+        private final LeafEvaluator<T> evaluator;
+        private int size;
+        private int[] parent = new int[16];
+        private int[] firstChild = new int[16];
+        private int[] nextSibling = new int[16];
+        private int[] lastChild = new int[16];
+        private short[] level = new short[16];
+        private long[] values = new long[16];
+        private int[] conditionalStart = new int[17];
+        private final ConditionalPool pool = new ConditionalPool();
+        private int current;
+
+        private Builder(Variant rootVariant, List<List<String>> symbolOrder, PossibleVariants possibleVariants, List<T> allConditionals) {
+            super(symbolOrder, possibleVariants);
+            this.rootVariant = rootVariant;
+            this.symbolOrder = symbolOrder;
+            this.allConditionals = allConditionals;
+            this.groupIds = new int[symbolOrder.size()][];
+            for (int group = 0; group < groupIds.length; group++) {
+                groupIds[group] = symbolOrder.get(group).stream().mapToInt(SymbolTable.global()::intern).toArray();
+            }
+            this.evaluator = new LeafEvaluator<>(allConditionals);
+        }
+
+        private void build(int rootLevel) {
+            build(List.of(new Pending(-1, rootLevel, rootVariant)));
+        }
+
+        @Override
+        Variant variant(Pending node) {
+            return node.variant();
+        }
+
+        @Override
+        int level(Pending node) {
+            return node.level();
+        }
+
+        @Override
+        void enter(Pending node) {
+            int nodeLevel = node.level();
+            current = add(node.parent(), nodeLevel, nodeLevel < 0 ? 0L : groupValues(node.variant(), groupIds[nodeLevel]));
+        }
+
+        @Override
+        void leaf(Pending node) {
+            evaluator.evaluate(node.variant(), pool::add);
+        }
+
+        @Override
+        Pending child(Pending parentNode, int group, Variant variant) {
+            return new Pending(current, group, variant);
+        }
+
+        private static long groupValues(Variant variant, int[] ids) {
+            long bits = 0L;
+            for (int i = 0; i < ids.length; i++) {
+                if (Boolean.TRUE.equals(variant.getValue(ids[i]))) {
+                    bits |= 1L << i;
+                }
+            }
+            return bits;
+        }
+
+        private int add(int parentNode, int nodeLevel, long nodeValues) {
+            if (size == parent.length) {
+                int capacity = grow(size);
+                parent = Arrays.copyOf(parent, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                lastChild = Arrays.copyOf(lastChild, capacity);
+                level = Arrays.copyOf(level, capacity);
+                values = Arrays.copyOf(values, capacity);
+                conditionalStart = Arrays.copyOf(conditionalStart, capacity + 1);
+            }
+            int node = size++;
+            parent[node] = parentNode;
+            firstChild[node] = -1;
+            nextSibling[node] = -1;
+            lastChild[node] = -1;
+            level[node] = (short) nodeLevel;
+            values[node] = nodeValues;
+            conditionalStart[node] = pool.size();
+            if (parentNode >= 0) {
+                if (lastChild[parentNode] < 0) {
+                    firstChild[parentNode] = node;
+                } else {
+                    nextSibling[lastChild[parentNode]] = node;
+                }
+                lastChild[parentNode] = node;
+            }
+            return node;
+        }
+    }
+}
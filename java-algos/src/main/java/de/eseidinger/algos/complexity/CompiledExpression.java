@@ -0,0 +1,731 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat postfix form of an {@link AstNode} tree. Identifiers are mapped to dense slots in order of
+ * first appearance; slot {@code i} is read from bit {@code i % 64} of word {@code i / 64} of the
+ * value mask. Binary operators are preceded by a conditional jump over their right operand, so the
+ * interpreter short-circuits while word-parallel evaluation can simply ignore the jumps.
+ * <p>
+ * Binary nodes are numbered as branches in preorder of the tree. A branch may be compiled with its
+ * right operand first; the operator instruction carries the branch number and that choice, which
+ * lets {@link #evaluateProfiled(long[], long[])} attribute outcomes to the operands.
+ */
+final class CompiledExpression implements BitmaskPredicate {
+    static final int LOAD = 0;
+    static final int NOT = 1;
+    static final int AND = 2;
+    static final int OR = 3;
+    static final int JUMP_IF_FALSE = 4;
+    static final int JUMP_IF_TRUE = 5;
+    static final int CONST = 6;
+
+    static final int KLEENE_FALSE = 0;
+    static final int KLEENE_TRUE = 1;
+    static final int KLEENE_UNKNOWN = 2;
+    static final int KLEENE_RESULT_BITS = 2;
+    static final int KLEENE_RESULT_MASK = (1 << KLEENE_RESULT_BITS) - 1;
+
+    static final int OP_BITS = 3;
+    static final int OP_MASK = (1 << OP_BITS) - 1;
+
+    private static final int BIT_STACK_DEPTH = Long.SIZE;
+
+    static final int SIDE_LEFT = 0;
+    static final int SIDE_RIGHT = 1;
+
+    private final AstNode ast;
+    private final int[] program;
+    private final String[] symbols;
+    private final int[] symbolIds;
+    private final int maxStack;
+    private final AstNode[] branches;
+    private final int[] costs;
+    private final boolean[] rightFirst;
+    private final int[] globalSymbolIds;
+
+    private CompiledExpression(AstNode ast, Assembler assembler) {
+        this.ast = ast;
+        this.program = Arrays.copyOf(assembler.code, assembler.size);
+        this.symbols = assembler.symbols.toArray(new String[0]);
+        this.symbolIds = assembler.symbolIds.stream().mapToInt(Integer::intValue).toArray();
+        this.maxStack = assembler.maxDepth;
+        this.branches = assembler.branches;
+        this.costs = assembler.costs;
+        this.rightFirst = assembler.rightFirst;
+        this.globalSymbolIds = new int[symbols.length];
+        for (int slot = 0; slot < symbols.length; slot++) {
+            globalSymbolIds[slot] = SymbolTable.global().intern(symbols[slot]);
+        }
+    }
+
+    static CompiledExpression compile(AstNode ast) {
+        return compile(ast, null, null);
+    }
+
+    private static CompiledExpression compile(AstNode ast, CompiledExpression slotsFrom, boolean[] order) {
+        Assembler assembler = new Assembler(ast, order);
+        if (slotsFrom != null) {
+            for (int slot = 0; slot < slotsFrom.symbols.length; slot++) {
+                assembler.slotOf(slotsFrom.symbols[slot], slotsFrom.symbolIds[slot]);
+            }
+        }
+        assembler.emitNode(ast, 0);
+        return new CompiledExpression(ast, assembler);
+    }
+
+    /**
+     * Recompiles the same tree with the same slots, evaluating the right operand of branch
+     * {@code b} first iff {@code order[b]} is set.
+     */
+    CompiledExpression reorder(boolean[] order) {
+        return Arrays.equals(order, rightFirst) ? this : compile(ast, this, order);
+    }
+
+    int branchCount() {
+        return branches.length;
+    }
+
+    AstNode branch(int branch) {
+        return branches[branch];
+    }
+
+    /**
+     * Number of instructions of one operand of {@code branch}, used as its evaluation cost.
+     */
+    int cost(int branch, int side) {
+        return costs[2 * branch + side];
+    }
+
+    boolean isRightFirst(int branch) {
+        return rightFirst[branch];
+    }
+
+    int slotCount() {
+        return symbols.length;
+    }
+
+    int wordCount() {
+        return (symbols.length + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    String symbol(int slot) {
+        return symbols[slot];
+    }
+
+    /**
+     * Symbol table id of the identifier in {@code slot}.
+     */
+    int symbolId(int slot) {
+        return symbolIds[slot];
+    }
+
+    /**
+     * Id of the identifier in {@code slot} in {@link SymbolTable#global()}, which is what variants
+     * are keyed on; equal to {@link #symbolId(int)} unless the expression has its own table.
+     */
+    int globalSymbolId(int slot) {
+        return globalSymbolIds[slot];
+    }
+
+    int slotOf(String symbol) {
+        for (int slot = 0; slot < symbols.length; slot++) {
+            if (symbols[slot].equals(symbol)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    List<String> symbols() {
+        return List.of(symbols);
+    }
+
+    int[] program() {
+        return program;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    @Override
+    public boolean evaluate(long values) {
+        if (maxStack > BIT_STACK_DEPTH) {
+            return evaluate(new long[] { values });
+        }
+        long stack = 0L;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> stack = (stack << 1) | ((values >>> (instruction >>> OP_BITS)) & 1L);
+                case CONST -> stack = (stack << 1) | (instruction >>> OP_BITS);
+                case NOT -> stack ^= 1L;
+                case AND -> stack = (stack >>> 1) & (stack | ~1L);
+                case OR -> stack = (stack >>> 1) | (stack & 1L);
+                case JUMP_IF_FALSE -> {
+                    if ((stack & 1L) == 0L) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if ((stack & 1L) != 0L) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return (stack & 1L) != 0L;
+    }
+
+    @Override
+    public boolean evaluate(long[] values) {
+        if (maxStack > BIT_STACK_DEPTH) {
+            return evaluateChecked(values, null);
+        }
+        long stack = 0L;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> {
+                    int slot = instruction >>> OP_BITS;
+                    stack = (stack << 1) | ((values[slot >>> 6] >>> slot) & 1L);
+                }
+                case CONST -> stack = (stack << 1) | (instruction >>> OP_BITS);
+                case NOT -> stack ^= 1L;
+                case AND -> stack = (stack >>> 1) & (stack | ~1L);
+                case OR -> stack = (stack >>> 1) | (stack & 1L);
+                case JUMP_IF_FALSE -> {
+                    if ((stack & 1L) == 0L) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if ((stack & 1L) != 0L) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return (stack & 1L) != 0L;
+    }
+
+    /**
+     * Array-stack interpreter used for programs deeper than the bit stack and for contexts with
+     * undefined slots, which only fail once evaluation actually reaches them.
+     */
+    boolean evaluateChecked(long[] values, long[] undefined) {
+        boolean[] stack = new boolean[Math.max(maxStack, 1)];
+        int top = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> {
+                    int slot = instruction >>> OP_BITS;
+                    if (undefined != null && ((undefined[slot >>> 6] >>> slot) & 1L) != 0L) {
+                        throw new IllegalArgumentException(
+                                "Identifier \"" + symbols[slot] + "\" is not defined in the context");
+                    }
+                    stack[++top] = ((values[slot >>> 6] >>> slot) & 1L) != 0L;
+                }
+                case CONST -> stack[++top] = (instruction >>> OP_BITS) != 0;
+                case NOT -> stack[top] = !stack[top];
+                case AND -> {
+                    top--;
+                    stack[top] = stack[top] && stack[top + 1];
+                }
+                case OR -> {
+                    top--;
+                    stack[top] = stack[top] || stack[top + 1];
+                }
+                case JUMP_IF_FALSE -> {
+                    if (!stack[top]) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if (stack[top]) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Evaluates like {@link #evaluate(long[])} and records, per branch and operand, how often the
+     * operand was evaluated and how often it decided the branch on its own: {@code counters} holds
+     * four entries per branch, evaluations and decisive outcomes of the left then the right operand.
+     */
+    boolean evaluateProfiled(long[] values, long[] counters) {
+        boolean[] stack = new boolean[Math.max(maxStack, 1)];
+        int top = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> {
+                    int slot = instruction >>> OP_BITS;
+                    stack[++top] = ((values[slot >>> 6] >>> slot) & 1L) != 0L;
+                }
+                case CONST -> stack[++top] = (instruction >>> OP_BITS) != 0;
+                case NOT -> stack[top] = !stack[top];
+                case AND, OR -> {
+                    int branch = instruction >>> (OP_BITS + 1);
+                    int second = ((instruction >>> OP_BITS) & 1) == 0 ? SIDE_RIGHT : SIDE_LEFT;
+                    boolean decisive = (instruction & OP_MASK) == AND ? !stack[top] : stack[top];
+                    record(counters, branch, second, decisive);
+                    top--;
+                    stack[top] = stack[top + 1];
+                }
+                case JUMP_IF_FALSE, JUMP_IF_TRUE -> {
+                    int target = instruction >>> OP_BITS;
+                    int operator = program[target - 1];
+                    int branch = operator >>> (OP_BITS + 1);
+                    int first = ((operator >>> OP_BITS) & 1) == 0 ? SIDE_LEFT : SIDE_RIGHT;
+                    boolean decisive = (instruction & OP_MASK) == JUMP_IF_FALSE ? !stack[top] : stack[top];
+                    record(counters, branch, first, decisive);
+                    if (decisive) {
+                        pc = target;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return stack[0];
+    }
+
+    private static void record(long[] counters, int branch, int side, boolean decisive) {
+        int index = 4 * branch + 2 * side;
+        counters[index]++;
+        if (decisive) {
+            counters[index + 1]++;
+        }
+    }
+
+    /**
+     * Kleene evaluation under a partial assignment: slots whose bit is clear in {@code known} are
+     * unknown. Every stack entry is kept dual-rail as "can be true" and "can be false", and the
+     * jumps skip right operands once the left one decides the result. An {@link #KLEENE_UNKNOWN}
+     * result carries the first unknown slot the evaluation read in the bits above
+     * {@link #KLEENE_RESULT_BITS}, which is the slot worth branching on next.
+     */
+    int evaluateKleene(long[] known, long[] values) {
+        if (maxStack > BIT_STACK_DEPTH) {
+            return evaluateKleeneDeep(known, values);
+        }
+        long canBeTrue = 0L;
+        long canBeFalse = 0L;
+        int firstUnknown = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> {
+                    int slot = instruction >>> OP_BITS;
+                    long unknown = ~(known[slot >>> 6] >>> slot) & 1L;
+                    long value = (values[slot >>> 6] >>> slot) & 1L;
+                    if (unknown != 0L && firstUnknown < 0) {
+                        firstUnknown = slot;
+                    }
+                    canBeTrue = (canBeTrue << 1) | value | unknown;
+                    canBeFalse = (canBeFalse << 1) | (value ^ 1L) | unknown;
+                }
+                case CONST -> {
+                    long value = instruction >>> OP_BITS;
+                    canBeTrue = (canBeTrue << 1) | value;
+                    canBeFalse = (canBeFalse << 1) | (value ^ 1L);
+                }
+                case NOT -> {
+                    long top = (canBeTrue ^ canBeFalse) & 1L;
+                    canBeTrue ^= top;
+                    canBeFalse ^= top;
+                }
+                case AND -> {
+                    canBeTrue = (canBeTrue >>> 1) & (canBeTrue | ~1L);
+                    canBeFalse = (canBeFalse >>> 1) | (canBeFalse & 1L);
+                }
+                case OR -> {
+                    canBeTrue = (canBeTrue >>> 1) | (canBeTrue & 1L);
+                    canBeFalse = (canBeFalse >>> 1) & (canBeFalse | ~1L);
+                }
+                case JUMP_IF_FALSE -> {
+                    if ((canBeTrue & 1L) == 0L) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if ((canBeFalse & 1L) == 0L) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return kleeneResult((canBeTrue & 1L) != 0L, (canBeFalse & 1L) != 0L, firstUnknown);
+    }
+
+    private int evaluateKleeneDeep(long[] known, long[] values) {
+        boolean[] canBeTrue = new boolean[maxStack];
+        boolean[] canBeFalse = new boolean[maxStack];
+        int firstUnknown = -1;
+        int top = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> {
+                    int slot = instruction >>> OP_BITS;
+                    boolean unknown = ((known[slot >>> 6] >>> slot) & 1L) == 0L;
+                    boolean value = ((values[slot >>> 6] >>> slot) & 1L) != 0L;
+                    if (unknown && firstUnknown < 0) {
+                        firstUnknown = slot;
+                    }
+                    top++;
+                    canBeTrue[top] = unknown || value;
+                    canBeFalse[top] = unknown || !value;
+                }
+                case CONST -> {
+                    top++;
+                    canBeTrue[top] = (instruction >>> OP_BITS) != 0;
+                    canBeFalse[top] = !canBeTrue[top];
+                }
+                case NOT -> {
+                    boolean swap = canBeTrue[top];
+                    canBeTrue[top] = canBeFalse[top];
+                    canBeFalse[top] = swap;
+                }
+                case AND -> {
+                    top--;
+                    canBeTrue[top] = canBeTrue[top] && canBeTrue[top + 1];
+                    canBeFalse[top] = canBeFalse[top] || canBeFalse[top + 1];
+                }
+                case OR -> {
+                    top--;
+                    canBeTrue[top] = canBeTrue[top] || canBeTrue[top + 1];
+                    canBeFalse[top] = canBeFalse[top] && canBeFalse[top + 1];
+                }
+                case JUMP_IF_FALSE -> {
+                    if (!canBeTrue[top]) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if (!canBeFalse[top]) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return kleeneResult(canBeTrue[0], canBeFalse[0], firstUnknown);
+    }
+
+    /**
+     * {@link #evaluateKleene(long[], long[])} that records outcomes like
+     * {@link #evaluateProfiled(long[], long[])}; an operand is decisive if it is known to decide
+     * its branch on its own.
+     */
+    int evaluateKleeneProfiled(long[] known, long[] values, long[] counters) {
+        boolean[] canBeTrue = new boolean[Math.max(maxStack, 1)];
+        boolean[] canBeFalse = new boolean[canBeTrue.length];
+        int firstUnknown = -1;
+        int top = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> {
+                    int slot = instruction >>> OP_BITS;
+                    boolean unknown = ((known[slot >>> 6] >>> slot) & 1L) == 0L;
+                    boolean value = ((values[slot >>> 6] >>> slot) & 1L) != 0L;
+                    if (unknown && firstUnknown < 0) {
+                        firstUnknown = slot;
+                    }
+                    top++;
+                    canBeTrue[top] = unknown || value;
+                    canBeFalse[top] = unknown || !value;
+                }
+                case CONST -> {
+                    top++;
+                    canBeTrue[top] = (instruction >>> OP_BITS) != 0;
+                    canBeFalse[top] = !canBeTrue[top];
+                }
+                case NOT -> {
+                    boolean swap = canBeTrue[top];
+                    canBeTrue[top] = canBeFalse[top];
+                    canBeFalse[top] = swap;
+                }
+                case AND, OR -> {
+                    int branch = instruction >>> (OP_BITS + 1);
+                    int second = ((instruction >>> OP_BITS) & 1) == 0 ? SIDE_RIGHT : SIDE_LEFT;
+                    boolean decisive = (instruction & OP_MASK) == AND ? !canBeTrue[top] : !canBeFalse[top];
+                    record(counters, branch, second, decisive);
+                    top--;
+                    if ((instruction & OP_MASK) == AND) {
+                        canBeTrue[top] = canBeTrue[top] && canBeTrue[top + 1];
+                        canBeFalse[top] = canBeFalse[top] || canBeFalse[top + 1];
+                    } else {
+                        canBeTrue[top] = canBeTrue[top] || canBeTrue[top + 1];
+                        canBeFalse[top] = canBeFalse[top] && canBeFalse[top + 1];
+                    }
+                }
+                case JUMP_IF_FALSE, JUMP_IF_TRUE -> {
+                    int target = instruction >>> OP_BITS;
+                    int operator = program[target - 1];
+                    int branch = operator >>> (OP_BITS + 1);
+                    int first = ((operator >>> OP_BITS) & 1) == 0 ? SIDE_LEFT : SIDE_RIGHT;
+                    boolean decisive = (instruction & OP_MASK) == JUMP_IF_FALSE ? !canBeTrue[top] : !canBeFalse[top];
+                    record(counters, branch, first, decisive);
+                    if (decisive) {
+                        pc = target;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+        return kleeneResult(canBeTrue[0], canBeFalse[0], firstUnknown);
+    }
+
+    /**
+     * Whether some completion of the partial assignment makes the program true. Only the unknown
+     * slots Kleene evaluation actually reads are branched on, so operands that are short-circuited
+     * or already decided never multiply the search. {@code known} and {@code values} are restored
+     * before returning.
+     */
+    boolean existsCompletion(long[] known, long[] values) {
+        return existsCompletion(known, values, null);
+    }
+
+    /**
+     * {@link #existsCompletion(long[], long[])} that records the outcomes of every Kleene
+     * evaluation of the search in {@code counters}, laid out as in
+     * {@link #evaluateProfiled(long[], long[])}; {@code null} disables recording.
+     */
+    boolean existsCompletion(long[] known, long[] values, long[] counters) {
+        int result = counters == null ? evaluateKleene(known, values) : evaluateKleeneProfiled(known, values, counters);
+        if ((result & KLEENE_RESULT_MASK) != KLEENE_UNKNOWN) {
+            return result == KLEENE_TRUE;
+        }
+        int slot = result >>> KLEENE_RESULT_BITS;
+        long bit = 1L << slot;
+        known[slot >>> 6] |= bit;
+        values[slot >>> 6] |= bit;
+        boolean found = existsCompletion(known, values, counters);
+        if (!found) {
+            values[slot >>> 6] &= ~bit;
+            found = existsCompletion(known, values, counters);
+        }
+        known[slot >>> 6] &= ~bit;
+        values[slot >>> 6] &= ~bit;
+        return found;
+    }
+
+    private static int kleeneResult(boolean canBeTrue, boolean canBeFalse, int firstUnknown) {
+        if (canBeTrue && canBeFalse) {
+            return KLEENE_UNKNOWN | (firstUnknown << KLEENE_RESULT_BITS);
+        }
+        return canBeTrue ? KLEENE_TRUE : KLEENE_FALSE;
+    }
+
+    /**
+     * Bit-parallel evaluation: every slot supplies a word of 64 independent values and the result
+     * holds the 64 outcomes. Jumps are ignored since all lanes are evaluated together.
+     */
+    long evaluateWords(long[] slotWords, long[] stack) {
+        int top = -1;
+        for (int instruction : program) {
+            switch (instruction & OP_MASK) {
+                case LOAD -> stack[++top] = slotWords[instruction >>> OP_BITS];
+                case CONST -> stack[++top] = (instruction >>> OP_BITS) != 0 ? -1L : 0L;
+                case NOT -> stack[top] = ~stack[top];
+                case AND -> {
+                    top--;
+                    stack[top] &= stack[top + 1];
+                }
+                case OR -> {
+                    top--;
+                    stack[top] |= stack[top + 1];
+                }
+                default -> {
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Column-at-a-time form of {@link #evaluateWords(long[], long[])}: every slot supplies a
+     * column of 64-lane words, of which words {@code [from, from + words)} are evaluated into
+     * {@code stack[0]}. Each instruction is a plain loop over the block, which the JIT unrolls and
+     * vectorizes. A jump is taken when its operand already decides every lane of the block.
+     *
+     * @param stack {@link #maxStack()} rows of at least {@code words} words
+     */
+    void evaluateColumns(long[][] slotColumns, int from, int words, long[][] stack) {
+        int top = -1;
+        int pc = 0;
+        while (pc < program.length) {
+            int instruction = program[pc++];
+            switch (instruction & OP_MASK) {
+                case LOAD -> System.arraycopy(slotColumns[instruction >>> OP_BITS], from, stack[++top], 0, words);
+                case CONST -> Arrays.fill(stack[++top], 0, words, (instruction >>> OP_BITS) != 0 ? -1L : 0L);
+                case NOT -> {
+                    long[] operand = stack[top];
+                    for (int i = 0; i < words; i++) {
+                        operand[i] = ~operand[i];
+                    }
+                }
+                case AND -> {
+                    long[] left = stack[--top];
+                    long[] right = stack[top + 1];
+                    for (int i = 0; i < words; i++) {
+                        left[i] &= right[i];
+                    }
+                }
+                case OR -> {
+                    long[] left = stack[--top];
+                    long[] right = stack[top + 1];
+                    for (int i = 0; i < words; i++) {
+                        left[i] |= right[i];
+                    }
+                }
+                case JUMP_IF_FALSE -> {
+                    if (allEqual(stack[top], words, 0L)) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                case JUMP_IF_TRUE -> {
+                    if (allEqual(stack[top], words, -1L)) {
+                        pc = instruction >>> OP_BITS;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown instruction " + instruction);
+            }
+        }
+    }
+
+    private static boolean allEqual(long[] column, int words, long value) {
+        for (int i = 0; i < words; i++) {
+            if (column[i] != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Assembler {
+        private int[] code = new int[16];
+        private int size;
+        private int depth;
+        private int maxDepth;
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final List<String> symbols = new ArrayList<>();
+        private final List<Integer> symbolIds = new ArrayList<>();
+        private final Map<AstNode, Integer> branchCounts = new IdentityHashMap<>();
+        private final boolean[] order;
+        private final AstNode[] branches;
+        private final int[] costs;
+        private final boolean[] rightFirst;
+
+        private Assembler(AstNode ast, boolean[] order) {
+            int numBranches = branchCount(ast);
+            this.order = order;
+            this.branches = new AstNode[numBranches];
+            this.costs = new int[2 * numBranches];
+            this.rightFirst = new boolean[numBranches];
+        }
+
+        private int branchCount(AstNode node) {
+            return switch (node.type) {
+                case IDENTIFIER, TRUE, FALSE -> 0;
+                case NOT -> branchCount(node.operand);
+                case AND, OR -> {
+                    Integer count = branchCounts.get(node);
+                    if (count == null) {
+                        count = 1 + branchCount(node.left) + branchCount(node.right);
+                        branchCounts.put(node, count);
+                    }
+                    yield count;
+                }
+            };
+        }
+
+        private int slotOf(String symbol, int symbolId) {
+            Integer slot = slots.get(symbol);
+            if (slot == null) {
+                slot = symbols.size();
+                slots.put(symbol, slot);
+                symbols.add(symbol);
+                symbolIds.add(symbolId);
+            }
+            return slot;
+        }
+
+        private void emitNode(AstNode node, int branch) {
+            switch (node.type) {
+                case IDENTIFIER -> {
+                    emit(LOAD, slotOf(node.value, node.symbol));
+                    push(1);
+                }
+                case TRUE, FALSE -> {
+                    emit(CONST, node.type == AstNode.Type.TRUE ? 1 : 0);
+                    push(1);
+                }
+                case NOT -> {
+                    emitNode(node.operand, branch);
+                    emit(NOT, 0);
+                }
+                case AND -> emitBinary(node, branch, JUMP_IF_FALSE, AND);
+                case OR -> emitBinary(node, branch, JUMP_IF_TRUE, OR);
+                default -> throw new IllegalArgumentException("Unknown node type \"" + node.type + "\"");
+            }
+        }
+
+        private void emitBinary(AstNode node, int branch, int jump, int operator) {
+            boolean swap = order != null && order[branch];
+            int leftBranch = branch + 1;
+            int rightBranch = leftBranch + branchCount(node.left);
+            branches[branch] = node;
+            rightFirst[branch] = swap;
+            emitOperand(swap ? node.right : node.left, swap ? rightBranch : leftBranch, branch, swap ? SIDE_RIGHT : SIDE_LEFT);
+            int jumpAt = emit(jump, 0);
+            emitOperand(swap ? node.left : node.right, swap ? leftBranch : rightBranch, branch, swap ? SIDE_LEFT : SIDE_RIGHT);
+            emit(operator, (branch << 1) | (swap ? 1 : 0));
+            push(-1);
+            code[jumpAt] = (size << OP_BITS) | jump;
+        }
+
+        private void emitOperand(AstNode operand, int operandBranch, int branch, int side) {
+            int start = size;
+            emitNode(operand, operandBranch);
+            costs[2 * branch + side] = size - start;
+        }
+
+        private int emit(int op, int argument) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+            }
+            code[size] = (argument << OP_BITS) | op;
+            return size++;
+        }
+
+        private void push(int delta) {
+            depth += delta;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+}
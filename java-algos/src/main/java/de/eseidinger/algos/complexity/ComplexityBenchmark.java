@@ -0,0 +1,430 @@
+package de.eseidinger.algos.complexity;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ComplexityBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        String benchmark = args.length > 0 ? args[0] : "all";
+        boolean all = benchmark.equals("all");
+        if (all || benchmark.equals("parse")) {
+            benchmarkParse();
+        }
+        if (all || benchmark.equals("store")) {
+            benchmarkStore();
+        }
+        if (all || benchmark.equals("load")) {
+            benchmarkLoad();
+        }
+        if (all || benchmark.equals("simplify")) {
+            benchmarkSimplify();
+        }
+        if (all || benchmark.equals("batch")) {
+            benchmarkBatch();
+        }
+        if (all || benchmark.equals("tree")) {
+            benchmarkTree();
+        }
+        if (all || benchmark.equals("parallel")) {
+            benchmarkParallel();
+        }
+        if (all || benchmark.equals("compact")) {
+            benchmarkCompact();
+        }
+        if (all || benchmark.equals("dag")) {
+            benchmarkDag();
+        }
+    }
+
+    static void benchmarkParse() {
+        List<String> sources = randomExpressions(new Random(42), 100_000, 500, 4);
+        long chars = sources.stream().mapToLong(String::length).sum();
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            int nodes = 0;
+            for (String source : sources) {
+                nodes += new BooleanExpressionParser(source).parse().type.ordinal();
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("parse: %,.0f expressions/s, %,.1f MB/s, %,d bytes/expression (%d)%n",
+                        sources.size() * 1e9 / elapsed,
+                        chars * 1e3 / elapsed,
+                        allocated / sources.size(),
+                        nodes);
+            }
+        }
+    }
+
+    static void benchmarkStore() {
+        List<String> sources = randomExpressions(new Random(42), 200_000, 40, 5);
+
+        long heapBefore = usedHeap();
+        List<BooleanExpression> trees = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            trees.add(new BooleanExpression(source));
+        }
+        long treeHeap = usedHeap() - heapBefore;
+        long treeNodes = trees.stream().mapToLong(expression -> ExpressionSimplifier.countNodes(expression.getAst())).sum();
+        trees.clear();
+
+        heapBefore = usedHeap();
+        ExpressionStore store = new ExpressionStore();
+        List<BooleanExpression> shared = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            shared.add(new BooleanExpression(source, store));
+        }
+        long sharedHeap = usedHeap() - heapBefore;
+
+        System.out.printf("store: %,d expressions, %,d tree nodes (%,d KB) vs %,d shared nodes (%,d KB)%n",
+                shared.size(), treeNodes, treeHeap / 1024, store.size(), sharedHeap / 1024);
+    }
+
+    static void benchmarkLoad() {
+        Path catalog = null;
+        try {
+            catalog = Files.createTempFile("catalog", ".txt");
+            try (BufferedWriter writer = Files.newBufferedWriter(catalog)) {
+                Random random = new Random(42);
+                for (int i = 0; i < 500_000; i++) {
+                    StringBuilder expression = new StringBuilder();
+                    appendRandomExpression(expression, random, 500, 4);
+                    writer.write("Part " + i + ": " + expression);
+                    writer.newLine();
+                }
+            }
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                PartCatalogLoader loader = new PartCatalogLoader();
+                List<Part> parts = loader.load(catalog);
+                if (round >= WARMUP_ROUNDS) {
+                    System.out.printf("load: %,d parts, %,.0f lines/s, %,d shared nodes%n",
+                            parts.size(), loader.getLinesPerSecond(), loader.getStore().size());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (catalog != null) {
+                catalog.toFile().delete();
+            }
+        }
+    }
+
+    static void benchmarkSimplify() {
+        List<String> sources = randomExpressions(new Random(42), 20_000, 8, 6);
+        boolean previousSimplifying = BooleanExpression.isSimplifying();
+        List<BooleanExpression> raw = new ArrayList<>(sources.size());
+        List<BooleanExpression> simplified = new ArrayList<>(sources.size());
+        try {
+            BooleanExpression.setSimplifying(false);
+            ExpressionStore rawStore = new ExpressionStore();
+            for (String source : sources) {
+                raw.add(new BooleanExpression(source, rawStore));
+            }
+            BooleanExpression.setSimplifying(true);
+            ExpressionStore simplifiedStore = new ExpressionStore();
+            for (String source : sources) {
+                simplified.add(new BooleanExpression(source, simplifiedStore));
+            }
+        } finally {
+            BooleanExpression.setSimplifying(previousSimplifying);
+        }
+        long rawNodes = raw.stream().mapToLong(BooleanExpression::getNodeCount).sum();
+        long simplifiedNodes = simplified.stream().mapToLong(BooleanExpression::getNodeCount).sum();
+
+        Random random = new Random(7);
+        List<Map<String, Boolean>> contexts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Map<String, Boolean> context = new HashMap<>();
+            for (int symbol = 0; symbol < 8; symbol++) {
+                context.put("S" + symbol, random.nextBoolean());
+            }
+            contexts.add(context);
+        }
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long rawNanos = timeEvaluations(raw, contexts);
+            long simplifiedNanos = timeEvaluations(simplified, contexts);
+            if (round >= WARMUP_ROUNDS) {
+                long evaluations = (long) sources.size() * contexts.size();
+                System.out.printf("simplify: %,d -> %,d nodes, %,.1f -> %,.1f ns/evaluation%n",
+                        rawNodes, simplifiedNodes, (double) rawNanos / evaluations, (double) simplifiedNanos / evaluations);
+            }
+        }
+    }
+
+    static void benchmarkBatch() {
+        List<String> sources = randomExpressions(new Random(42), 100, 24, 6);
+        List<Condition> conditions = new ArrayList<>(sources.size());
+        for (String source : sources) {
+            conditions.add(new Condition(new BooleanExpression(source)));
+        }
+        Random random = new Random(7);
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            List<Attribute> attributes = new ArrayList<>(24);
+            for (int symbol = 0; symbol < 24; symbol++) {
+                attributes.add(new Attribute("S" + symbol, random.nextBoolean()));
+            }
+            variants.add(new Variant(attributes));
+        }
+        VariantBatch batch = new VariantBatch(variants);
+        List<Variant> sample = variants.subList(0, 10_000);
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            long singleMatches = 0;
+            for (Condition condition : conditions) {
+                for (Variant variant : sample) {
+                    if (condition.check(variant)) {
+                        singleMatches++;
+                    }
+                }
+            }
+            long singleNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long batchMatches = 0;
+            for (Condition condition : conditions) {
+                for (long word : condition.check(batch)) {
+                    batchMatches += Long.bitCount(word);
+                }
+            }
+            long batchNanos = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("batch: %,.1f ns/check per variant (%,d matches) vs %,.2f ns/check batched (%,d matches)%n",
+                        (double) singleNanos / (conditions.size() * sample.size()), singleMatches,
+                        (double) batchNanos / (conditions.size() * (long) batch.size()), batchMatches);
+            }
+        }
+    }
+
+    static void benchmarkTree() {
+        List<List<String>> symbolOrder = groupedSymbols(8, 2);
+        Random random = new Random(42);
+        List<Variant> possibleVariants = randomCompleteVariants(random, 16, 2_000);
+        List<Part> parts = randomParts(random, 500, 16);
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+                    symbolOrder, possibleVariants, parts);
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("tree: %,d leaves in %,.1f ms%n", tree.getLeafNodes().size(), elapsed / 1e6);
+            }
+        }
+    }
+
+    static void benchmarkParallel() {
+        List<List<String>> symbolOrder = groupedSymbols(6, 3);
+        Random random = new Random(42);
+        List<Variant> possibleVariants = randomCompleteVariants(random, 18, 20_000);
+        VariantIndex index = new VariantIndex(symbolOrder.stream().flatMap(List::stream).toList(), possibleVariants);
+        List<Part> parts = randomParts(random, 500, 18);
+        Variant root = VariantNode.createRootVariant(symbolOrder);
+
+        long sequential = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            new VariantNode<>(new ArrayList<>(), root, symbolOrder, index, parts);
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                sequential = Math.min(sequential, elapsed);
+            }
+        }
+        System.out.printf("parallel: sequential %,.1f ms%n", sequential / 1e6);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(2 * threads, cores) : threads + 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                long start = System.nanoTime();
+                VariantNode.buildParallel(new ArrayList<>(), root, symbolOrder, index, parts, pool, 2);
+                long elapsed = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    best = Math.min(best, elapsed);
+                }
+            }
+            pool.shutdown();
+            System.out.printf("parallel: %d threads %,.1f ms, speedup %.2f%n", threads, best / 1e6, (double) sequential / best);
+        }
+    }
+
+    static void benchmarkCompact() {
+        List<List<String>> symbolOrder = groupedSymbols(6, 3);
+        Random random = new Random(42);
+        List<Variant> possibleVariants = randomCompleteVariants(random, 18, 20_000);
+        VariantIndex index = new VariantIndex(symbolOrder.stream().flatMap(List::stream).toList(), possibleVariants);
+        List<Part> parts = randomParts(random, 100, 18);
+        Variant root = VariantNode.createRootVariant(symbolOrder);
+
+        long heapBefore = usedHeap();
+        VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), root, symbolOrder, index, parts);
+        long treeHeap = usedHeap() - heapBefore;
+        int nodes = 0;
+        for (var iterator = tree.nodeIterator(); iterator.hasNext(); iterator.next()) {
+            nodes++;
+        }
+        tree = null;
+
+        heapBefore = usedHeap();
+        CompactVariantTree<Part> compact = CompactVariantTree.build(new ArrayList<>(), root, symbolOrder, index, parts);
+        long compactHeap = usedHeap() - heapBefore;
+        long conditionalBytes = 0;
+        for (int leaf : compact.getLeafNodes()) {
+            conditionalBytes += (long) Integer.BYTES * compact.getConditionals(leaf).size();
+        }
+        System.out.printf("compact: %,d nodes, %,.1f bytes/node as VariantNode vs %,.1f bytes/node compact, "
+                        + "both with %,.1f bytes/node of conditional references%n",
+                nodes, (double) treeHeap / nodes, (double) compactHeap / compact.size(), (double) conditionalBytes / nodes);
+    }
+
+    static void benchmarkDag() {
+        int groups = 8;
+        List<List<String>> symbolOrder = groupedSymbols(groups, 2);
+        List<Variant> possibleVariants = new ArrayList<>();
+        for (int i = 0; i < 1 << (2 * groups); i++) {
+            List<Attribute> attributes = new ArrayList<>();
+            boolean possible = true;
+            for (int symbol = 0; symbol < 2 * groups; symbol++) {
+                boolean value = ((i >>> symbol) & 1) != 0;
+                possible &= symbol % 2 == 0 || !value || !attributes.get(symbol - 1).getValue();
+                attributes.add(new Attribute("S" + symbol, value));
+            }
+            if (possible) {
+                possibleVariants.add(new Variant(attributes));
+            }
+        }
+        Random random = new Random(42);
+        List<Part> parts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int group = random.nextInt(groups - 1);
+            String source = "(S" + (2 * group + random.nextInt(2)) + (random.nextBoolean() ? " & " : " | ")
+                    + "!S" + (2 * group + 2 + random.nextInt(2)) + ")";
+            parts.add(new Part(source, new Condition(new BooleanExpression(source))));
+        }
+        Variant root = VariantNode.createRootVariant(symbolOrder);
+
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), root, symbolOrder, possibleVariants, parts);
+            long treeNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            VariantDag<Part> dag = VariantDag.build(new ArrayList<>(), root, symbolOrder, possibleVariants, parts);
+            long dagNanos = System.nanoTime() - start;
+            if (round >= WARMUP_ROUNDS) {
+                System.out.printf("dag: tree %,d leaves in %,.1f ms vs %,d DAG nodes (%,d leaf paths) in %,.1f ms%n",
+                        tree.getLeafNodes().size(), treeNanos / 1e6, dag.size(), dag.countLeafPaths(), dagNanos / 1e6);
+            }
+        }
+    }
+
+    private static List<List<String>> groupedSymbols(int groups, int groupSize) {
+        List<List<String>> symbolOrder = new ArrayList<>();
+        for (int group = 0; group < groups; group++) {
+            List<String> symbols = new ArrayList<>();
+            for (int i = 0; i < groupSize; i++) {
+                symbols.add("S" + (group * groupSize + i));
+            }
+            symbolOrder.add(symbols);
+        }
+        return symbolOrder;
+    }
+
+    private static List<Variant> randomCompleteVariants(Random random, int numSymbols, int count) {
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<Attribute> attributes = new ArrayList<>(numSymbols);
+            for (int symbol = 0; symbol < numSymbols; symbol++) {
+                attributes.add(new Attribute("S" + symbol, random.nextBoolean()));
+            }
+            variants.add(new Variant(attributes));
+        }
+        return variants;
+    }
+
+    private static List<Part> randomParts(Random random, int count, int numSymbols) {
+        List<Part> parts = new ArrayList<>();
+        ExpressionStore store = new ExpressionStore();
+        for (String source : randomExpressions(random, count, numSymbols, 5)) {
+            parts.add(new Part(source, new Condition(new BooleanExpression(source, store))));
+        }
+        return parts;
+    }
+
+    private static long timeEvaluations(List<BooleanExpression> expressions, List<Map<String, Boolean>> contexts) {
+        long start = System.nanoTime();
+        int satisfied = 0;
+        for (Map<String, Boolean> context : contexts) {
+            for (BooleanExpression expression : expressions) {
+                if (expression.evaluate(context)) {
+                    satisfied++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (satisfied < 0) {
+            throw new IllegalStateException();
+        }
+        return elapsed;
+    }
+
+    static List<String> randomExpressions(Random random, int count, int numSymbols, int maxDepth) {
+        List<String> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder expression = new StringBuilder();
+            appendRandomExpression(expression, random, numSymbols, maxDepth);
+            expressions.add(expression.toString());
+        }
+        return expressions;
+    }
+
+    private static void appendRandomExpression(StringBuilder expression, Random random, int numSymbols, int depth) {
+        int choice = depth == 0 ? 0 : random.nextInt(4);
+        switch (choice) {
+            case 0 -> expression.append("S").append(random.nextInt(numSymbols));
+            case 1 -> {
+                expression.append("!");
+                appendRandomExpression(expression, random, numSymbols, depth - 1);
+            }
+            default -> {
+                expression.append("(");
+                appendRandomExpression(expression, random, numSymbols, depth - 1);
+                expression.append(choice == 2 ? " & " : " | ");
+                appendRandomExpression(expression, random, numSymbols, depth - 1);
+                expression.append(")");
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return 0L;
+    }
+}
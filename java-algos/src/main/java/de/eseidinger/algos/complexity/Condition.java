@@ -1,57 +1,78 @@
 package de.eseidinger.algos.complexity;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 class Condition {
     private final BooleanExpression condition;
-    private final Map<String, BooleanExpression> lenientConditionCache;
+    private final BddManager bdd;
+    private final int bddRoot;
+    private final List<String> bddSupport;
+    private final int[] bddSupportIds;
+    private final Map<List<String>, Integer> projectedRoots;
 
     public Condition(BooleanExpression condition) {
         this.condition = condition;
-        this.lenientConditionCache = new HashMap<>();
+        this.bdd = null;
+        this.bddRoot = BddManager.FALSE;
+        this.bddSupport = List.of();
+        this.bddSupportIds = new int[0];
+        this.projectedRoots = null;
     }
 
-    public boolean check(Variant variant) {
-        List<String> relevantSymbols = variant.getSortedAttributes().stream()
-                .filter(attr -> attr.getValue() != null)
-                .map(Attribute::getSymbol)
-                .collect(Collectors.toList());
-        BooleanExpression relevantCondition = getRelevantCondition(relevantSymbols);
-        return relevantCondition.evaluate(variant.toDict());
+    /**
+     * Checks variants on the BDD of {@code condition} in {@code bdd}: symbols the variant leaves
+     * open are quantified away on the BDD, and the result is read off a single path.
+     */
+    public Condition(BooleanExpression condition, BddManager bdd) {
+        this.condition = condition;
+        this.bdd = bdd;
+        this.bddRoot = bdd.fromExpression(condition);
+        this.bddSupport = bdd.support(bddRoot);
+        this.bddSupportIds = bddSupport.stream().mapToInt(SymbolTable.global()::intern).toArray();
+        this.projectedRoots = new ConcurrentHashMap<>();
     }
 
-    private BooleanExpression getRelevantCondition(List<String> relevantSymbols) {
-        String cacheKey = String.join(",", relevantSymbols.stream().sorted().toList());
-        if (lenientConditionCache.containsKey(cacheKey)) {
-            return lenientConditionCache.get(cacheKey);
+    /**
+     * Whether the variant can still satisfy the condition: symbols the variant leaves open may
+     * take any value.
+     */
+    public boolean check(Variant variant) {
+        if (bdd != null) {
+            return checkBdd(variant);
         }
+        return condition.isSatisfiable(variant);
+    }
 
-        List<String> symbolsInCondition = condition.getIdentifiers();
-        List<String> symbols = new ArrayList<>(relevantSymbols);
-        for (String symbol : symbolsInCondition) {
-            if (!symbols.contains(symbol)) {
-                symbols.add(symbol);
+    private boolean checkBdd(Variant variant) {
+        List<String> open = null;
+        for (int i = 0; i < bddSupportIds.length; i++) {
+            if (variant.getValue(bddSupportIds[i]) == null) {
+                if (open == null) {
+                    open = new ArrayList<>();
+                }
+                open.add(bddSupport.get(i));
             }
         }
+        int root = open == null ? bddRoot : projectedRoots.computeIfAbsent(open, symbols -> bdd.exists(bddRoot, symbols));
+        return bdd.evaluate(root, variant);
+    }
 
-        int numberOfIrrelevantSymbols = symbolsInCondition.size() - relevantSymbols.size();
-        if (numberOfIrrelevantSymbols == 0) {
-            lenientConditionCache.put(cacheKey, condition);
-            return condition;
-        }
+    /**
+     * Checks every variant of {@code batch}; bit {@code i} of the result is {@link #check(Variant)}
+     * of variant {@code i}.
+     */
+    public long[] check(VariantBatch batch) {
+        return batch.check(condition);
+    }
+
+    BooleanExpression getExpression() {
+        return condition;
+    }
 
-        List<Integer> minterms = condition.getMinterms(symbols);
-        Set<Integer> shiftedMinterms = minterms.stream()
-                .map(minterm -> minterm >> numberOfIrrelevantSymbols)
-                .collect(Collectors.toSet());
-        BooleanExpression relevantExpression = BooleanExpression.sopFromMinterms(
-                new ArrayList<>(shiftedMinterms), relevantSymbols);
-        lenientConditionCache.put(cacheKey, relevantExpression);
-        return relevantExpression;
+    ExpressionStore getStore() {
+        return condition.getStore();
     }
 }
@@ -0,0 +1,159 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Depth-first expansion of a variant tree from an explicit stack, shared by the tree
+ * representations so that deep symbol orders never exhaust the call stack. A node is entered when
+ * it is taken from the stack. A final variant is then a leaf; otherwise the possible variants of
+ * the next symbol group become its children from left to right and are pushed, so nodes are
+ * entered in pre-order and leaves from left to right.
+ *
+ * @param <N> what a representation keeps for a node on the stack
+ */
+abstract class DepthFirstBuilder<N> {
+    private final List<List<String>> symbolOrder;
+    private final PossibleVariants possibleVariants;
+    private final long[] flatSymbolIds;
+
+    DepthFirstBuilder(List<List<String>> symbolOrder, PossibleVariants possibleVariants) {
+        this.symbolOrder = symbolOrder;
+        this.possibleVariants = possibleVariants;
+        this.flatSymbolIds = Variant.symbolIdMask(symbolOrder.stream().flatMap(List::stream).toList());
+    }
+
+    /**
+     * Indexes {@code possibleVariants} over the symbols of {@code symbolOrder}.
+     */
+    static VariantIndex index(List<List<String>> symbolOrder, List<Variant> possibleVariants) {
+        return new VariantIndex(symbolOrder.stream().flatMap(List::stream).toList(), possibleVariants);
+    }
+
+    /**
+     * Level of a root that assigns {@code currentSymbols}, for representations that keep the
+     * levels of their nodes in shorts.
+     *
+     * @throws IllegalArgumentException if {@code symbolOrder} has more groups than a short holds
+     */
+    static int rootLevel(List<List<String>> symbolOrder, List<String> currentSymbols) {
+        if (symbolOrder.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many symbol groups: " + symbolOrder.size());
+        }
+        return currentSymbols.isEmpty() ? -1 : symbolOrder.indexOf(currentSymbols);
+    }
+
+    /**
+     * Capacity a growing array of {@code length} elements is copied into.
+     */
+    static int grow(int length) {
+        return length + (length >> 1);
+    }
+
+    /**
+     * Expands {@code nodes} and everything below them that {@link #expand(Object)} lets through.
+     */
+    final void build(List<N> nodes) {
+        Deque<N> pending = new ArrayDeque<>();
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            pending.push(nodes.get(i));
+        }
+        while (!pending.isEmpty()) {
+            N node = pending.pop();
+            enter(node);
+            if (variant(node).isFinal(flatSymbolIds)) {
+                leaf(node);
+            } else if (expand(node)) {
+                List<N> children = children(node);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the children of {@code node} without building below them.
+     *
+     * @return the children to expand, which leaves out those {@link #child} did not return
+     */
+    final List<N> children(N node) {
+        List<N> children = new ArrayList<>();
+        int group = level(node) + 1;
+        if (group < symbolOrder.size()) {
+            variant(node).streamDerivedVariants(symbolOrder.get(group), possibleVariants).forEach(derived -> {
+                N child = child(node, group, derived);
+                if (child != null) {
+                    children.add(child);
+                }
+            });
+        }
+        childrenCreated(node);
+        return children;
+    }
+
+    abstract Variant variant(N node);
+
+    /**
+     * Index of the symbol group {@code node} assigns, -1 for a root without a group.
+     */
+    abstract int level(N node);
+
+    /**
+     * Called when {@code node} is taken from the stack, before anything else happens to it.
+     */
+    void enter(N node) {
+    }
+
+    /**
+     * Called for a node with a final variant.
+     */
+    abstract void leaf(N node);
+
+    /**
+     * Whether the children of {@code node} are created now; lazy trees defer them.
+     */
+    boolean expand(N node) {
+        return true;
+    }
+
+    /**
+     * Adds the child of {@code parent} that assigns {@code variant} to symbol group
+     * {@code group}.
+     *
+     * @return the child to expand, {@code null} if it needs no expansion
+     */
+    abstract N child(N parent, int group, Variant variant);
+
+    /**
+     * Called after all children of {@code node} were created.
+     */
+    void childrenCreated(N node) {
+    }
+
+    /**
+     * Growing pool of conditional indices that nodes or edges refer to by offset.
+     */
+    static final class ConditionalPool {
+        private int[] conditionals = new int[16];
+        private int size;
+
+        void add(int conditional) {
+            if (size == conditionals.length) {
+                conditionals = Arrays.copyOf(conditionals, grow(size));
+            }
+            conditionals[size++] = conditional;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(conditionals, size);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot of the outcomes a {@link BooleanExpression} observed in profiling mode, with one
+ * {@link Branch} per AND/OR node in preorder of the expression tree.
+ */
+public final class ExpressionProfile {
+    /**
+     * Samples both operands of a branch need before the branch may be reordered.
+     */
+    public static final long MIN_SAMPLES = 32;
+
+    private final long evaluations;
+    private final List<Branch> branches;
+
+    ExpressionProfile(CompiledExpression program, long[] counters, long evaluations) {
+        this.evaluations = evaluations;
+        List<Branch> list = new ArrayList<>(program.branchCount());
+        for (int branch = 0; branch < program.branchCount(); branch++) {
+            AstNode node = program.branch(branch);
+            int base = 4 * branch;
+            list.add(new Branch(
+                    node.type == AstNode.Type.AND ? "&" : "|",
+                    toSource(node.left),
+                    toSource(node.right),
+                    program.isRightFirst(branch),
+                    counters[base],
+                    counters[base + 1],
+                    counters[base + 2],
+                    counters[base + 3],
+                    program.cost(branch, CompiledExpression.SIDE_LEFT),
+                    program.cost(branch, CompiledExpression.SIDE_RIGHT)));
+        }
+        this.branches = List.copyOf(list);
+    }
+
+    /**
+     * Number of profiled evaluations.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public List<Branch> getBranches() {
+        return branches;
+    }
+
+    boolean[] learnedOrder() {
+        boolean[] order = new boolean[branches.size()];
+        for (int branch = 0; branch < order.length; branch++) {
+            order[branch] = branches.get(branch).prefersRightFirst();
+        }
+        return order;
+    }
+
+    private static String toSource(AstNode node) {
+        return switch (node.type) {
+            case IDENTIFIER -> node.value;
+            case TRUE -> "1";
+            case FALSE -> "0";
+            case NOT -> "!" + toSource(node.operand);
+            case AND -> "(" + toSource(node.left) + " & " + toSource(node.right) + ")";
+            case OR -> "(" + toSource(node.left) + " | " + toSource(node.right) + ")";
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ExpressionProfile[evaluations=").append(evaluations).append("]");
+        for (Branch branch : branches) {
+            builder.append(System.lineSeparator()).append("  ").append(branch);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Outcomes of one AND/OR node. An operand is decisive when it determines the node on its own:
+     * false for {@code &}, true for {@code |}. Costs are instruction counts of the operands.
+     */
+    public record Branch(String operator, String left, String right, boolean rightFirst,
+            long leftEvaluations, long leftDecisive, long rightEvaluations, long rightDecisive,
+            int leftCost, int rightCost) {
+
+        /**
+         * Whether the right operand should run first: the operand with the higher ratio of
+         * decisive outcomes to cost goes first, which minimizes the expected cost of the branch.
+         * Without enough samples for both operands the current order is kept.
+         */
+        public boolean prefersRightFirst() {
+            if (leftEvaluations < MIN_SAMPLES || rightEvaluations < MIN_SAMPLES) {
+                return rightFirst;
+            }
+            double leftRate = (leftDecisive + 1.0) / (leftEvaluations + 2.0);
+            double rightRate = (rightDecisive + 1.0) / (rightEvaluations + 2.0);
+            double leftScore = leftRate * rightCost;
+            double rightScore = rightRate * leftCost;
+            if (leftScore == rightScore) {
+                return rightFirst;
+            }
+            return rightScore > leftScore;
+        }
+
+        @Override
+        public String toString() {
+            String first = rightFirst ? right : left;
+            String second = rightFirst ? left : right;
+            return first + " " + operator + " " + second
+                    + " [left " + leftDecisive + "/" + leftEvaluations
+                    + ", right " + rightDecisive + "/" + rightEvaluations + " decisive]";
+        }
+    }
+}
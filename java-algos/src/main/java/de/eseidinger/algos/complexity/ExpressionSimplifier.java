@@ -0,0 +1,219 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites an expression tree bottom-up. Chains of the same operator are treated as one n-ary
+ * node, in which constants are folded, complementary operands ({@code X & !X}) collapse to a
+ * constant, and duplicates ({@code X & X}) and absorbed operands ({@code X | (X & Y)}) are
+ * dropped. Double negations are removed, and an operator whose operands are all negated is
+ * turned around with De Morgan ({@code !X & !Y} becomes {@code !(X | Y)}). Subtrees that do not
+ * change are returned as they are, so shared nodes of an {@link ExpressionStore} stay shared.
+ */
+final class ExpressionSimplifier {
+    private final ExpressionStore store;
+    private final Map<AstNode, AstNode> simplified = new IdentityHashMap<>();
+    private final Map<AstNode, Integer> canonicalIds = new IdentityHashMap<>();
+    private final Map<NodeKey, Integer> keys = new HashMap<>();
+
+    private ExpressionSimplifier(ExpressionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Simplifies {@code ast}; new nodes are created in {@code store} if it is not {@code null}.
+     */
+    static AstNode simplify(AstNode ast, ExpressionStore store) {
+        return new ExpressionSimplifier(store).simplify(ast);
+    }
+
+    /**
+     * Number of nodes of the tree, counting shared subtrees once per occurrence.
+     */
+    static long countNodes(AstNode node) {
+        return switch (node.type) {
+            case IDENTIFIER, TRUE, FALSE -> 1;
+            case NOT -> 1 + countNodes(node.operand);
+            case AND, OR -> 1 + countNodes(node.left) + countNodes(node.right);
+        };
+    }
+
+    private AstNode simplify(AstNode node) {
+        AstNode result = simplified.get(node);
+        if (result == null) {
+            result = switch (node.type) {
+                case IDENTIFIER, TRUE, FALSE -> node;
+                case NOT -> simplifyNot(node);
+                case AND, OR -> simplifyChain(node);
+            };
+            simplified.put(node, result);
+        }
+        return result;
+    }
+
+    private AstNode simplifyNot(AstNode node) {
+        return negate(simplify(node.operand), node);
+    }
+
+    /**
+     * The negation of the simplified {@code operand}, folding constants and double negations;
+     * {@code node} is reused if it already negates {@code operand}.
+     */
+    private AstNode negate(AstNode operand, AstNode node) {
+        return switch (operand.type) {
+            case TRUE -> constant(false);
+            case FALSE -> constant(true);
+            case NOT -> operand.operand;
+            default -> node != null && operand == node.operand ? node : not(operand);
+        };
+    }
+
+    private AstNode simplifyChain(AstNode node) {
+        AstNode.Type type = node.type;
+        AstNode.Type dual = type == AstNode.Type.AND ? AstNode.Type.OR : AstNode.Type.AND;
+        AstNode.Type absorbing = type == AstNode.Type.AND ? AstNode.Type.FALSE : AstNode.Type.TRUE;
+        AstNode.Type identity = type == AstNode.Type.AND ? AstNode.Type.TRUE : AstNode.Type.FALSE;
+
+        List<AstNode> original = new ArrayList<>();
+        flatten(node, type, original);
+        List<AstNode> operands = new ArrayList<>();
+        boolean changed = false;
+        for (AstNode operand : original) {
+            AstNode result = simplify(operand);
+            changed |= result != operand;
+            if (result.type == absorbing) {
+                return result;
+            }
+            if (result.type == identity) {
+                continue;
+            }
+            flatten(result, type, operands);
+        }
+        changed |= operands.size() != original.size();
+
+        Set<Integer> ids = new HashSet<>();
+        for (AstNode operand : operands) {
+            ids.add(canonicalId(operand));
+        }
+        for (AstNode operand : operands) {
+            if (operand.type == AstNode.Type.NOT && ids.contains(canonicalId(operand.operand))) {
+                return constant(absorbing == AstNode.Type.TRUE);
+            }
+        }
+
+        List<Set<Integer>> terms = new ArrayList<>(operands.size());
+        for (AstNode operand : operands) {
+            List<AstNode> factors = new ArrayList<>();
+            flatten(operand, dual, factors);
+            Set<Integer> term = new HashSet<>();
+            for (AstNode factor : factors) {
+                term.add(canonicalId(factor));
+            }
+            terms.add(term);
+        }
+        List<AstNode> kept = new ArrayList<>(operands.size());
+        for (int i = 0; i < operands.size(); i++) {
+            if (!isAbsorbed(terms, i)) {
+                kept.add(operands.get(i));
+            }
+        }
+        changed |= kept.size() != operands.size();
+
+        if (kept.isEmpty()) {
+            return constant(identity == AstNode.Type.TRUE);
+        }
+        if (kept.size() == 1) {
+            return kept.get(0);
+        }
+        boolean allNegated = true;
+        for (AstNode operand : kept) {
+            allNegated &= operand.type == AstNode.Type.NOT;
+        }
+        if (allNegated) {
+            AstNode inner = kept.get(0).operand;
+            for (int i = 1; i < kept.size(); i++) {
+                inner = binary(dual, inner, kept.get(i).operand);
+            }
+            // The dual chain may hold duplicate or absorbed operands again; its operands are
+            // never negations, so simplifying it does not come back here.
+            return negate(simplify(inner), null);
+        }
+        if (!changed) {
+            return node;
+        }
+        AstNode result = kept.get(0);
+        for (int i = 1; i < kept.size(); i++) {
+            result = binary(type, result, kept.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Operand {@code i} is absorbed if the factors of another operand are a subset of its own;
+     * of two equal operands the later one is dropped.
+     */
+    private static boolean isAbsorbed(List<Set<Integer>> terms, int i) {
+        Set<Integer> term = terms.get(i);
+        for (int j = 0; j < terms.size(); j++) {
+            if (j == i) {
+                continue;
+            }
+            Set<Integer> other = terms.get(j);
+            if (other.size() <= term.size() && term.containsAll(other) && (other.size() < term.size() || j < i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void flatten(AstNode node, AstNode.Type type, List<AstNode> operands) {
+        if (node.type == type) {
+            flatten(node.left, type, operands);
+            flatten(node.right, type, operands);
+        } else {
+            operands.add(node);
+        }
+    }
+
+    /**
+     * Structural hash-consing id: two nodes have the same id iff they are equal trees.
+     */
+    private int canonicalId(AstNode node) {
+        Integer id = canonicalIds.get(node);
+        if (id == null) {
+            NodeKey key = switch (node.type) {
+                case IDENTIFIER -> new NodeKey(node.type, node.symbol, -1);
+                case TRUE, FALSE -> new NodeKey(node.type, -1, -1);
+                case NOT -> new NodeKey(node.type, canonicalId(node.operand), -1);
+                case AND, OR -> new NodeKey(node.type, canonicalId(node.left), canonicalId(node.right));
+            };
+            id = keys.computeIfAbsent(key, k -> keys.size());
+            canonicalIds.put(node, id);
+        }
+        return id;
+    }
+
+    private AstNode constant(boolean value) {
+        return store != null ? store.constant(value) : AstNode.constant(value);
+    }
+
+    private AstNode not(AstNode operand) {
+        return store != null ? store.not(operand) : AstNode.not(operand);
+    }
+
+    private AstNode binary(AstNode.Type type, AstNode left, AstNode right) {
+        if (store != null) {
+            return type == AstNode.Type.AND ? store.and(left, right) : store.or(left, right);
+        }
+        return AstNode.binary(type, left, right);
+    }
+
+    private record NodeKey(AstNode.Type type, int first, int second) {
+    }
+}
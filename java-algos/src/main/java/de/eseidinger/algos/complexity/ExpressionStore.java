@@ -0,0 +1,101 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hash-conses expression nodes so that structurally identical subexpressions of all expressions
+ * parsed into the store are a single {@link AstNode} with a stable, dense {@link AstNode#id}.
+ * A store is meant to live as long as the model whose conditions it holds.
+ */
+public final class ExpressionStore {
+    private final SymbolTable symbols;
+    private final ConcurrentHashMap<NodeKey, AstNode> nodes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final ParseCache parseCache = new ParseCache(ParseCache.DEFAULT_CAPACITY);
+
+    public ExpressionStore() {
+        this(SymbolTable.global());
+    }
+
+    public ExpressionStore(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Number of distinct nodes in the store.
+     */
+    public int size() {
+        return nextId.get();
+    }
+
+    AstNode identifier(int symbol) {
+        return nodes.computeIfAbsent(new NodeKey(AstNode.Type.IDENTIFIER, symbol, -1),
+                key -> withId(AstNode.identifier(symbol, symbols.name(symbol))));
+    }
+
+    AstNode constant(boolean value) {
+        AstNode.Type type = value ? AstNode.Type.TRUE : AstNode.Type.FALSE;
+        return nodes.computeIfAbsent(new NodeKey(type, -1, -1), key -> withId(AstNode.constant(value)));
+    }
+
+    AstNode not(AstNode operand) {
+        return nodes.computeIfAbsent(new NodeKey(AstNode.Type.NOT, operand.id, -1),
+                key -> withId(AstNode.not(operand)));
+    }
+
+    AstNode and(AstNode left, AstNode right) {
+        return binary(AstNode.Type.AND, left, right);
+    }
+
+    AstNode or(AstNode left, AstNode right) {
+        return binary(AstNode.Type.OR, left, right);
+    }
+
+    private AstNode binary(AstNode.Type type, AstNode left, AstNode right) {
+        return nodes.computeIfAbsent(new NodeKey(type, left.id, right.id),
+                key -> withId(AstNode.binary(type, left, right)));
+    }
+
+    /**
+     * Returns the node of the store that is structurally equal to {@code node}, adding the nodes
+     * the store does not hold yet. Identifiers of {@code node} must use the store's symbol table.
+     */
+    AstNode intern(AstNode node) {
+        return intern(node, new IdentityHashMap<>());
+    }
+
+    private AstNode intern(AstNode node, Map<AstNode, AstNode> interned) {
+        AstNode result = interned.get(node);
+        if (result == null) {
+            result = switch (node.type) {
+                case IDENTIFIER -> identifier(node.symbol);
+                case TRUE -> constant(true);
+                case FALSE -> constant(false);
+                case NOT -> not(intern(node.operand, interned));
+                case AND -> and(intern(node.left, interned), intern(node.right, interned));
+                case OR -> or(intern(node.left, interned), intern(node.right, interned));
+            };
+            interned.put(node, result);
+        }
+        return result;
+    }
+
+    private AstNode withId(AstNode node) {
+        node.id = nextId.getAndIncrement();
+        return node;
+    }
+
+    private record NodeKey(AstNode.Type type, int first, int second) {
+    }
+}
@@ -0,0 +1,361 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the Kleene value of every condition of a set of conditionals under an assignment that
+ * changes a few symbols at a time. The expression trees of all conditions are merged into one
+ * DAG, shared nodes (e.g. of an {@link ExpressionStore}) once, with parent lists per node and
+ * identifier nodes per symbol. When a symbol changes only its identifier nodes and the ancestors
+ * whose value actually changes are recomputed, level by level, so a step costs time proportional
+ * to what changed rather than to the number of conditions.
+ * <p>
+ * Unassigned symbols are {@link BooleanExpression.Truth#UNKNOWN}. Instances are not thread-safe.
+ */
+final class IncrementalEvaluator<T extends Conditional> {
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte UNKNOWN = 2;
+
+    private final List<T> conditionals;
+    private final AstNode[] nodes;
+    private final int[] first;
+    private final int[] second;
+    private final int[] levels;
+    private final int[] parentStart;
+    private final int[] parents;
+    private final int[] rootStart;
+    private final int[] rootConditionals;
+    private final int[] roots;
+    private final int[][] leaves;
+    private final byte[] assignment;
+    private final int[] stamps;
+    private int generation;
+    private int assignedCount;
+    private final byte[] values;
+    private final int[][] queues;
+    private final int[] queueSizes;
+    private final boolean[] queued;
+    private int[] changed = new int[16];
+    private int changedCount;
+
+    IncrementalEvaluator(List<T> conditionals) {
+        this.conditionals = List.copyOf(conditionals);
+        Indexer indexer = new Indexer();
+        roots = new int[this.conditionals.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = indexer.index(this.conditionals.get(i).getCondition().getExpression().getAst());
+        }
+        int size = indexer.nodes.size();
+        nodes = indexer.nodes.toArray(new AstNode[0]);
+        first = indexer.first.stream().mapToInt(Integer::intValue).toArray();
+        second = indexer.second.stream().mapToInt(Integer::intValue).toArray();
+        levels = indexer.levels.stream().mapToInt(Integer::intValue).toArray();
+
+        parentStart = new int[size + 1];
+        for (int node = 0; node < size; node++) {
+            countEdge(parentStart, first[node]);
+            if (second[node] != first[node]) {
+                countEdge(parentStart, second[node]);
+            }
+        }
+        toOffsets(parentStart);
+        parents = new int[parentStart[size]];
+        int[] fill = parentStart.clone();
+        for (int node = 0; node < size; node++) {
+            if (first[node] >= 0) {
+                parents[fill[first[node]]++] = node;
+            }
+            if (second[node] >= 0 && second[node] != first[node]) {
+                parents[fill[second[node]]++] = node;
+            }
+        }
+
+        rootStart = new int[size + 1];
+        for (int root : roots) {
+            rootStart[root + 1]++;
+        }
+        toOffsets(rootStart);
+        rootConditionals = new int[roots.length];
+        fill = rootStart.clone();
+        for (int i = 0; i < roots.length; i++) {
+            rootConditionals[fill[roots[i]]++] = i;
+        }
+
+        Map<Integer, List<Integer>> leafLists = new HashMap<>();
+        int maxLevel = 0;
+        int maxSymbolId = -1;
+        for (int node = 0; node < size; node++) {
+            if (nodes[node].type == AstNode.Type.IDENTIFIER) {
+                int symbolId = SymbolTable.global().intern(nodes[node].value);
+                leafLists.computeIfAbsent(symbolId, id -> new ArrayList<>()).add(node);
+                maxSymbolId = Math.max(maxSymbolId, symbolId);
+            }
+            maxLevel = Math.max(maxLevel, levels[node]);
+        }
+        leaves = new int[maxSymbolId + 1][];
+        leafLists.forEach((symbolId, list) -> leaves[symbolId] = list.stream().mapToInt(Integer::intValue).toArray());
+        assignment = new byte[leaves.length];
+        Arrays.fill(assignment, UNKNOWN);
+        stamps = new int[leaves.length];
+
+        int[] perLevel = new int[maxLevel + 1];
+        for (int node = 0; node < size; node++) {
+            perLevel[levels[node]]++;
+        }
+        queues = new int[maxLevel + 1][];
+        for (int level = 0; level <= maxLevel; level++) {
+            queues[level] = new int[perLevel[level]];
+        }
+        queueSizes = new int[maxLevel + 1];
+        queued = new boolean[size];
+
+        values = new byte[size];
+        Arrays.fill(values, UNKNOWN);
+        for (int node = 0; node < size; node++) {
+            values[node] = compute(node);
+        }
+    }
+
+    private IncrementalEvaluator(IncrementalEvaluator<T> other) {
+        conditionals = other.conditionals;
+        nodes = other.nodes;
+        first = other.first;
+        second = other.second;
+        levels = other.levels;
+        parentStart = other.parentStart;
+        parents = other.parents;
+        rootStart = other.rootStart;
+        rootConditionals = other.rootConditionals;
+        roots = other.roots;
+        leaves = other.leaves;
+        assignment = other.assignment.clone();
+        stamps = other.stamps.clone();
+        generation = other.generation;
+        assignedCount = other.assignedCount;
+        values = other.values.clone();
+        queues = new int[other.queues.length][];
+        for (int level = 0; level < queues.length; level++) {
+            queues[level] = new int[other.queues[level].length];
+        }
+        queueSizes = new int[other.queueSizes.length];
+        queued = new boolean[other.queued.length];
+    }
+
+    /**
+     * An evaluator in the same state that shares the merged DAG with this one, for use on another
+     * thread.
+     */
+    IncrementalEvaluator<T> copy() {
+        return new IncrementalEvaluator<>(this);
+    }
+
+    private static void countEdge(int[] start, int child) {
+        if (child >= 0) {
+            start[child + 1]++;
+        }
+    }
+
+    private static void toOffsets(int[] start) {
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+    }
+
+    List<T> getConditionals() {
+        return conditionals;
+    }
+
+    /**
+     * Current value of the condition of conditional {@code index}.
+     */
+    BooleanExpression.Truth value(int index) {
+        return switch (values[roots[index]]) {
+            case TRUE -> BooleanExpression.Truth.TRUE;
+            case FALSE -> BooleanExpression.Truth.FALSE;
+            default -> BooleanExpression.Truth.UNKNOWN;
+        };
+    }
+
+    /**
+     * Assigns {@code value} to {@code symbol}, {@code null} making it unknown again.
+     *
+     * @return the conditionals whose value changed
+     */
+    List<T> set(String symbol, Boolean value) {
+        changedCount = 0;
+        int symbolId = SymbolTable.global().find(symbol);
+        if (symbolId >= 0 && symbolId < leaves.length && leaves[symbolId] != null) {
+            assign(symbolId, toByte(value));
+            propagate();
+        }
+        return changedConditionals();
+    }
+
+    /**
+     * Moves to the assignment of {@code variant}, changing only the symbols whose value differs
+     * from the current assignment. Symbols are matched by their global id.
+     *
+     * @return the conditionals whose value changed
+     */
+    List<T> update(Variant variant) {
+        updateIndices(variant);
+        return changedConditionals();
+    }
+
+    /**
+     * {@link #update(Variant)} returning the indices of the conditionals whose value changed.
+     */
+    int[] updateIndices(Variant variant) {
+        changedCount = 0;
+        if (++generation == 0) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        int seen = 0;
+        for (int symbolId : variant.symbolIds()) {
+            if (symbolId >= leaves.length || leaves[symbolId] == null) {
+                continue;
+            }
+            byte value = toByte(variant.getValue(symbolId));
+            if (value != UNKNOWN && stamps[symbolId] != generation) {
+                stamps[symbolId] = generation;
+                seen++;
+            }
+            assign(symbolId, value);
+        }
+        if (assignedCount > seen) {
+            for (int symbolId = 0; symbolId < assignment.length; symbolId++) {
+                if (assignment[symbolId] != UNKNOWN && stamps[symbolId] != generation) {
+                    assign(symbolId, UNKNOWN);
+                }
+            }
+        }
+        propagate();
+        return Arrays.copyOf(changed, changedCount);
+    }
+
+    private List<T> changedConditionals() {
+        List<T> conditionalList = new ArrayList<>(changedCount);
+        for (int i = 0; i < changedCount; i++) {
+            conditionalList.add(conditionals.get(changed[i]));
+        }
+        return conditionalList;
+    }
+
+    private static byte toByte(Boolean value) {
+        return value == null ? UNKNOWN : value ? TRUE : FALSE;
+    }
+
+    private void assign(int symbolId, byte value) {
+        byte previous = assignment[symbolId];
+        if (previous == value) {
+            return;
+        }
+        assignedCount += (value != UNKNOWN ? 1 : 0) - (previous != UNKNOWN ? 1 : 0);
+        assignment[symbolId] = value;
+        for (int leaf : leaves[symbolId]) {
+            values[leaf] = value;
+            changed(leaf);
+        }
+    }
+
+    private void propagate() {
+        for (int level = 1; level < queues.length; level++) {
+            int[] queue = queues[level];
+            for (int i = 0; i < queueSizes[level]; i++) {
+                int node = queue[i];
+                queued[node] = false;
+                byte value = compute(node);
+                if (value != values[node]) {
+                    values[node] = value;
+                    changed(node);
+                }
+            }
+            queueSizes[level] = 0;
+        }
+    }
+
+    private void changed(int node) {
+        for (int i = rootStart[node]; i < rootStart[node + 1]; i++) {
+            if (changedCount == changed.length) {
+                changed = Arrays.copyOf(changed, 2 * changedCount);
+            }
+            changed[changedCount++] = rootConditionals[i];
+        }
+        for (int i = parentStart[node]; i < parentStart[node + 1]; i++) {
+            int parent = parents[i];
+            if (!queued[parent]) {
+                queued[parent] = true;
+                queues[levels[parent]][queueSizes[levels[parent]]++] = parent;
+            }
+        }
+    }
+
+    private byte compute(int node) {
+        return switch (nodes[node].type) {
+            case TRUE -> TRUE;
+            case FALSE -> FALSE;
+            case IDENTIFIER -> values[node];
+            case NOT -> values[first[node]] == UNKNOWN ? UNKNOWN : (byte) (1 - values[first[node]]);
+            case AND -> {
+                byte left = values[first[node]];
+                byte right = values[second[node]];
+                yield left == FALSE || right == FALSE ? FALSE : left == TRUE && right == TRUE ? TRUE : UNKNOWN;
+            }
+            case OR -> {
+                byte left = values[first[node]];
+                byte right = values[second[node]];
+                yield left == TRUE || right == TRUE ? TRUE : left == FALSE && right == FALSE ? FALSE : UNKNOWN;
+            }
+        };
+    }
+
+    /**
+     * Numbers the nodes of all trees so that operands come before the nodes using them.
+     */
+    private static final class Indexer {
+        private final Map<AstNode, Integer> ids = new IdentityHashMap<>();
+        private final List<AstNode> nodes = new ArrayList<>();
+        private final List<Integer> first = new ArrayList<>();
+        private final List<Integer> second = new ArrayList<>();
+        private final List<Integer> levels = new ArrayList<>();
+
+        private int index(AstNode node) {
+            Integer id = ids.get(node);
+            if (id != null) {
+                return id;
+            }
+            int left = -1;
+            int right = -1;
+            switch (node.type) {
+                case NOT -> left = index(node.operand);
+                case AND, OR -> {
+                    left = index(node.left);
+                    right = index(node.right);
+                }
+                default -> {
+                }
+            }
+            int level = 0;
+            if (left >= 0) {
+                level = levels.get(left) + 1;
+            }
+            if (right >= 0) {
+                level = Math.max(level, levels.get(right) + 1);
+            }
+            id = nodes.size();
+            ids.put(node, id);
+            nodes.add(node);
+            first.add(left);
+            second.add(right);
+            levels.add(level);
+            return id;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Decides which conditionals hold at the final variants of a tree build, visited one after the
+ * other. An {@link IncrementalEvaluator} follows the variants, and the conditionals whose value is
+ * not {@link BooleanExpression.Truth#FALSE} are kept in a running set that is adjusted only for
+ * the conditionals whose value changed. A leaf therefore costs time proportional to the change and
+ * to the conditionals that may hold; only the unknown ones need {@link Condition#check(Variant)}.
+ * <p>
+ * Instances are not thread-safe; {@link #copy()} gives another thread its own.
+ */
+final class LeafEvaluator<T extends Conditional> {
+    private final List<T> conditionals;
+    private final IncrementalEvaluator<T> evaluator;
+    private final BitSet notFalse;
+
+    LeafEvaluator(List<T> conditionals) {
+        this.conditionals = List.copyOf(conditionals);
+        this.evaluator = new IncrementalEvaluator<>(this.conditionals);
+        this.notFalse = new BitSet(this.conditionals.size());
+        for (int i = 0; i < this.conditionals.size(); i++) {
+            notFalse.set(i, evaluator.value(i) != BooleanExpression.Truth.FALSE);
+        }
+    }
+
+    private LeafEvaluator(LeafEvaluator<T> other) {
+        this.conditionals = other.conditionals;
+        this.evaluator = other.evaluator.copy();
+        this.notFalse = (BitSet) other.notFalse.clone();
+    }
+
+    /**
+     * An evaluator in the same state that shares the merged conditions with this one.
+     */
+    LeafEvaluator<T> copy() {
+        return new LeafEvaluator<>(this);
+    }
+
+    /**
+     * Moves to {@code variant} and passes the indices of the conditionals that hold there to
+     * {@code holding}, in ascending order.
+     */
+    void evaluate(Variant variant, IntConsumer holding) {
+        for (int i : evaluator.updateIndices(variant)) {
+            notFalse.set(i, evaluator.value(i) != BooleanExpression.Truth.FALSE);
+        }
+        for (int i = notFalse.nextSetBit(0); i >= 0; i = notFalse.nextSetBit(i + 1)) {
+            if (evaluator.value(i) == BooleanExpression.Truth.TRUE || conditionals.get(i).getCondition().check(variant)) {
+                holding.accept(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Two-level minimization of a function given as a minterm bitmap. Up to
+ * {@link #EXACT_MAX_VARIABLES} variables all prime implicants are generated with Quine-McCluskey
+ * and covered greedily after the essential ones; wider functions use an Espresso-style
+ * expand/irredundant pass over the on-set. Variable {@code i} is bit {@code i} of a minterm.
+ */
+final class LogicMinimizer {
+    static final int EXACT_MAX_VARIABLES = 12;
+    static final int BITMAP_MAX_VARIABLES = 20;
+
+    /**
+     * A product term: literals for all variables in {@code mask}, with the polarity given by
+     * {@code values}.
+     */
+    record Cube(long values, long mask) {
+        boolean contains(long minterm) {
+            return (minterm & mask) == values;
+        }
+
+        int literals() {
+            return Long.bitCount(mask);
+        }
+    }
+
+    private LogicMinimizer() {
+    }
+
+    static List<Cube> minimize(long[] bitmap, int numVariables) {
+        if (numVariables > BooleanExpression.MAX_BITMAP_IDENTIFIERS) {
+            throw new IllegalArgumentException("Cannot minimize a function of " + numVariables + " variables");
+        }
+        long fullMask = numVariables == Long.SIZE ? -1L : (1L << numVariables) - 1;
+        long numMinterms = 1L << numVariables;
+        long onCount = 0;
+        for (long word : bitmap) {
+            onCount += Long.bitCount(word);
+        }
+        if (onCount == 0) {
+            return List.of();
+        }
+        if (onCount == numMinterms) {
+            return List.of(new Cube(0L, 0L));
+        }
+        return numVariables <= EXACT_MAX_VARIABLES
+                ? quineMcCluskey(bitmap, numVariables, fullMask)
+                : expandAndReduce(bitmap, numVariables, fullMask);
+    }
+
+    /**
+     * Minimizes a minterm set. Sets up to {@link #BITMAP_MAX_VARIABLES} variables are expanded into
+     * a bitmap; wider ones start from their cubes, merge cubes that differ in a single literal
+     * until nothing changes and drop cubes contained in another one.
+     */
+    static List<Cube> minimize(MintermSet minterms) {
+        int numVariables = minterms.numVariables();
+        if (numVariables <= BITMAP_MAX_VARIABLES) {
+            return minimize(minterms.toBitmap(), numVariables);
+        }
+        Set<Cube> cover = new HashSet<>();
+        for (int i = 0; i < minterms.cubeCount(); i++) {
+            cover.add(minterms.cube(i));
+        }
+        while (true) {
+            Set<Cube> merged = new HashSet<>();
+            Set<Cube> used = new HashSet<>();
+            for (Cube cube : cover) {
+                long literals = cube.mask;
+                while (literals != 0L) {
+                    long bit = Long.lowestOneBit(literals);
+                    literals &= literals - 1;
+                    if (cover.contains(new Cube(cube.values ^ bit, cube.mask))) {
+                        merged.add(new Cube(cube.values & ~bit, cube.mask & ~bit));
+                        used.add(cube);
+                    }
+                }
+            }
+            if (merged.isEmpty()) {
+                break;
+            }
+            cover.removeAll(used);
+            cover.addAll(merged);
+        }
+        List<Cube> result = new ArrayList<>(cover);
+        result.sort(Comparator.comparingInt(Cube::literals).thenComparingLong(Cube::mask).thenComparingLong(Cube::values));
+        result.removeIf(cube -> isContainedInOther(cube, result));
+        return result;
+    }
+
+    private static boolean isContainedInOther(Cube cube, List<Cube> cover) {
+        for (Cube other : cover) {
+            if (other != cube && (cube.mask & other.mask) == other.mask && (cube.values & other.mask) == other.values) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSet(long[] bitmap, long minterm) {
+        return ((bitmap[(int) (minterm >>> 6)] >>> minterm) & 1L) != 0L;
+    }
+
+    private static List<Long> onSet(long[] bitmap) {
+        List<Long> minterms = new ArrayList<>();
+        for (int word = 0; word < bitmap.length; word++) {
+            long bits = bitmap[word];
+            while (bits != 0L) {
+                minterms.add(((long) word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return minterms;
+    }
+
+    private static List<Cube> quineMcCluskey(long[] bitmap, int numVariables, long fullMask) {
+        List<Long> minterms = onSet(bitmap);
+        Set<Cube> level = new HashSet<>();
+        for (long minterm : minterms) {
+            level.add(new Cube(minterm, fullMask));
+        }
+        List<Cube> primes = new ArrayList<>();
+        while (!level.isEmpty()) {
+            Set<Cube> next = new HashSet<>();
+            Set<Cube> combined = new HashSet<>();
+            for (Cube cube : level) {
+                for (int variable = 0; variable < numVariables; variable++) {
+                    long bit = 1L << variable;
+                    if ((cube.mask & bit) == 0L || (cube.values & bit) != 0L) {
+                        continue;
+                    }
+                    Cube partner = new Cube(cube.values | bit, cube.mask);
+                    if (level.contains(partner)) {
+                        next.add(new Cube(cube.values, cube.mask & ~bit));
+                        combined.add(cube);
+                        combined.add(partner);
+                    }
+                }
+            }
+            for (Cube cube : level) {
+                if (!combined.contains(cube)) {
+                    primes.add(cube);
+                }
+            }
+            level = next;
+        }
+        return selectCover(primes, minterms);
+    }
+
+    /**
+     * Takes all essential primes, then repeatedly the prime covering the most uncovered minterms
+     * with the fewest literals.
+     */
+    private static List<Cube> selectCover(List<Cube> primes, List<Long> minterms) {
+        Map<Long, List<Cube>> coveredBy = new HashMap<>();
+        for (long minterm : minterms) {
+            List<Cube> covering = new ArrayList<>();
+            for (Cube prime : primes) {
+                if (prime.contains(minterm)) {
+                    covering.add(prime);
+                }
+            }
+            coveredBy.put(minterm, covering);
+        }
+
+        Set<Cube> cover = new HashSet<>();
+        List<Cube> result = new ArrayList<>();
+        Set<Long> uncovered = new HashSet<>(minterms);
+        for (long minterm : minterms) {
+            List<Cube> covering = coveredBy.get(minterm);
+            if (covering.size() == 1 && cover.add(covering.get(0))) {
+                result.add(covering.get(0));
+            }
+        }
+        for (Cube cube : result) {
+            uncovered.removeIf(cube::contains);
+        }
+        while (!uncovered.isEmpty()) {
+            Cube best = null;
+            int bestCount = 0;
+            for (Cube prime : primes) {
+                if (cover.contains(prime)) {
+                    continue;
+                }
+                int count = 0;
+                for (long minterm : uncovered) {
+                    if (prime.contains(minterm)) {
+                        count++;
+                    }
+                }
+                if (count > bestCount || (count == bestCount && count > 0 && prime.literals() < best.literals())) {
+                    best = prime;
+                    bestCount = count;
+                }
+            }
+            cover.add(best);
+            result.add(best);
+            Cube selected = best;
+            uncovered.removeIf(selected::contains);
+        }
+        return result;
+    }
+
+    private static List<Cube> expandAndReduce(long[] bitmap, int numVariables, long fullMask) {
+        List<Cube> cover = new ArrayList<>();
+        for (int word = 0; word < bitmap.length; word++) {
+            long bits = bitmap[word];
+            while (bits != 0L) {
+                long minterm = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (isCovered(cover, minterm)) {
+                    continue;
+                }
+                cover.add(expand(bitmap, new Cube(minterm, fullMask), numVariables, fullMask));
+            }
+        }
+        return irredundant(bitmap, cover, fullMask);
+    }
+
+    /**
+     * Drops literals one at a time as long as the cube stays inside the on-set.
+     */
+    private static Cube expand(long[] bitmap, Cube cube, int numVariables, long fullMask) {
+        for (int variable = 0; variable < numVariables; variable++) {
+            long bit = 1L << variable;
+            if ((cube.mask & bit) == 0L) {
+                continue;
+            }
+            Cube raised = new Cube(cube.values & ~bit, cube.mask & ~bit);
+            // the cube already lies in the on-set, so only the newly added half needs checking
+            if (isImplicant(bitmap, new Cube(cube.values ^ bit, cube.mask), fullMask)) {
+                cube = raised;
+            }
+        }
+        return cube;
+    }
+
+    private static boolean isImplicant(long[] bitmap, Cube cube, long fullMask) {
+        long freeMask = ~cube.mask & fullMask;
+        long subset = 0L;
+        do {
+            if (!isSet(bitmap, cube.values | subset)) {
+                return false;
+            }
+            subset = (subset - freeMask) & freeMask;
+        } while (subset != 0L);
+        return true;
+    }
+
+    private static List<Cube> irredundant(long[] bitmap, List<Cube> cover, long fullMask) {
+        List<Cube> result = new ArrayList<>(cover);
+        result.sort(Comparator.comparingInt(Cube::literals).reversed());
+        for (int i = 0; i < result.size(); ) {
+            Cube candidate = result.get(i);
+            result.remove(i);
+            if (!isCoveredByOthers(bitmap, candidate, result, fullMask)) {
+                result.add(i, candidate);
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isCoveredByOthers(long[] bitmap, Cube cube, List<Cube> others, long fullMask) {
+        long freeMask = ~cube.mask & fullMask;
+        long subset = 0L;
+        do {
+            long minterm = cube.values | subset;
+            if (isSet(bitmap, minterm) && !isCovered(others, minterm)) {
+                return false;
+            }
+            subset = (subset - freeMask) & freeMask;
+        } while (subset != 0L);
+        return true;
+    }
+
+    private static boolean isCovered(List<Cube> cover, long minterm) {
+        for (Cube cube : cover) {
+            if (cube.contains(minterm)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
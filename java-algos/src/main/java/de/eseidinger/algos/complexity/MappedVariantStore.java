@@ -0,0 +1,473 @@
+package de.eseidinger.algos.complexity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Possible variants packed into fixed-width records of a file that is memory-mapped for reading,
+ * so that very large variant sets live in the page cache instead of on the heap. A record holds
+ * two bit vectors over the symbols of the store, the assigned mask and the value mask, of
+ * {@code ceil(symbols / 64)} words each.
+ * <p>
+ * The writer sorts the records in place when it closes, lexicographically by the value of each
+ * symbol in the order the store was created with, false before true before unassigned. A query
+ * binary-searches the range of records that assign the longest prefix of that order it assigns
+ * the same way, then scans only that range for its remaining symbols. Tree builds whose
+ * flattened symbol order is the store's order query exactly such prefixes, so a check costs
+ * {@code O(prefix * log(size))} instead of a scan of the whole file.
+ * <p>
+ * File layout, little-endian: a 32 byte header (magic, version, symbol count, record count,
+ * offset of the first record), the symbol names as length-prefixed UTF-8, padding to 8 bytes, and
+ * the records.
+ */
+public final class MappedVariantStore implements PossibleVariants, Closeable {
+    private static final long MAGIC = 0x5641524953544f52L;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final List<String> symbols;
+    private final int[] positionOf;
+    private final int[] symbolIds;
+    private final int words;
+    private final long size;
+    private volatile Records records;
+
+    private MappedVariantStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a variant store");
+        }
+        int symbolCount = header.getInt();
+        this.size = header.getLong();
+        long recordsOffset = header.getLong();
+
+        ByteBuffer names = ByteBuffer.allocate((int) (recordsOffset - HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, names, HEADER_BYTES);
+        names.flip();
+        List<String> symbolList = new ArrayList<>(symbolCount);
+        symbolIds = new int[symbolCount];
+        int maxId = -1;
+        for (int i = 0; i < symbolCount; i++) {
+            byte[] name = new byte[names.getInt()];
+            names.get(name);
+            symbolList.add(new String(name, StandardCharsets.UTF_8));
+            symbolIds[i] = SymbolTable.global().intern(symbolList.get(i));
+            maxId = Math.max(maxId, symbolIds[i]);
+        }
+        this.symbols = List.copyOf(symbolList);
+        this.positionOf = new int[maxId + 1];
+        Arrays.fill(positionOf, -1);
+        for (int i = 0; i < symbolCount; i++) {
+            positionOf[symbolIds[i]] = i;
+        }
+
+        this.words = (symbolCount + Long.SIZE - 1) / Long.SIZE;
+        this.records = new Records(channel, FileChannel.MapMode.READ_ONLY, recordsOffset, size, words);
+    }
+
+    /**
+     * Maps the store in {@code file}.
+     */
+    public static MappedVariantStore open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedVariantStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a store in {@code file} over {@code symbols}; variants are appended one at a time, so
+     * they never need to be in memory together.
+     */
+    public static Writer create(Path file, List<String> symbols) throws IOException {
+        return new Writer(file, symbols);
+    }
+
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Number of variants in the store.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Materializes variant {@code index} of the sorted records with all symbols of the store.
+     */
+    public Variant get(long index) {
+        Records current = records();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Variant " + index + " of " + size);
+        }
+        List<Attribute> attributes = new ArrayList<>(symbols.size());
+        for (int i = 0; i < symbols.size(); i++) {
+            int digit = current.digit(index, i);
+            attributes.add(Attribute.of(symbolIds[i], digit == Records.OPEN ? null : digit == Records.TRUE));
+        }
+        return new Variant(attributes);
+    }
+
+    @Override
+    public boolean isPossible(Variant variant) {
+        long[] queryAssigned = new long[words];
+        long[] queryValues = new long[words];
+        for (int id : variant.symbolIds()) {
+            Boolean value = variant.getValue(id);
+            if (value == null) {
+                continue;
+            }
+            int position = id < positionOf.length ? positionOf[id] : -1;
+            if (position < 0) {
+                return false;
+            }
+            queryAssigned[position >>> 6] |= 1L << position;
+            if (value) {
+                queryValues[position >>> 6] |= 1L << position;
+            }
+        }
+        Records current = records();
+        int prefix = 0;
+        while (prefix < symbols.size() && ((queryAssigned[prefix >>> 6] >>> prefix) & 1L) != 0L) {
+            prefix++;
+        }
+        int[] queryWords = new int[words];
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            long rest = prefix >= (word + 1) * Long.SIZE ? 0L
+                    : prefix <= word * Long.SIZE ? queryAssigned[word] : queryAssigned[word] & (-1L << prefix);
+            if (rest != 0L) {
+                queryWords[count++] = word;
+            }
+        }
+
+        long lo = 0;
+        long hi = size;
+        for (int position = 0; position < prefix && lo < hi; position++) {
+            int digit = (int) ((queryValues[position >>> 6] >>> position) & 1L);
+            lo = current.lowerBound(lo, hi, position, digit);
+            hi = current.lowerBound(lo, hi, position, digit + 1);
+        }
+        if (lo < hi && count == 0) {
+            return true;
+        }
+        for (long record = lo; record < hi; record++) {
+            if (current.matches(record, queryWords, count, queryAssigned, queryValues)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the file and drops the mappings of this store, which are unmapped once they are
+     * garbage collected; further queries fail.
+     */
+    @Override
+    public void close() throws IOException {
+        records = null;
+        channel.close();
+    }
+
+    private Records records() {
+        Records current = records;
+        if (current == null) {
+            throw new IllegalStateException("Variant store is closed");
+        }
+        return current;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of variant store");
+            }
+        }
+    }
+
+    /**
+     * Appends variants to a new store file; {@link #close()} sorts the records and completes the
+     * header.
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int[] positionOf;
+        private final int words;
+        private final long recordsOffset;
+        private final long[] record;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long count;
+
+        private Writer(Path file, List<String> symbols) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            int maxId = -1;
+            int[] ids = new int[symbols.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = SymbolTable.global().intern(symbols.get(i));
+                maxId = Math.max(maxId, ids[i]);
+            }
+            this.positionOf = new int[maxId + 1];
+            Arrays.fill(positionOf, -1);
+            for (int i = 0; i < ids.length; i++) {
+                positionOf[ids[i]] = i;
+            }
+            this.words = (symbols.size() + Long.SIZE - 1) / Long.SIZE;
+            this.record = new long[2 * words];
+
+            int namesBytes = 0;
+            List<byte[]> names = new ArrayList<>(symbols.size());
+            for (String symbol : symbols) {
+                byte[] name = symbol.getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                namesBytes += Integer.BYTES + name.length;
+            }
+            this.recordsOffset = (HEADER_BYTES + namesBytes + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+            ByteBuffer head = ByteBuffer.allocate((int) recordsOffset).order(ByteOrder.LITTLE_ENDIAN);
+            head.putLong(MAGIC).putInt(VERSION).putInt(symbols.size()).putLong(0L).putLong(recordsOffset);
+            for (byte[] name : names) {
+                head.putInt(name.length).put(name);
+            }
+            head.position(head.capacity()).flip();
+            while (head.hasRemaining()) {
+                channel.write(head);
+            }
+        }
+
+        /**
+         * Appends {@code variant}; its symbols must all belong to the store.
+         *
+         * @throws IllegalArgumentException if {@code variant} has a symbol the store does not
+         */
+        public void add(Variant variant) throws IOException {
+            Arrays.fill(record, 0L);
+            for (int id : variant.symbolIds()) {
+                int position = id < positionOf.length ? positionOf[id] : -1;
+                if (position < 0) {
+                    throw new IllegalArgumentException("Symbol \"" + SymbolTable.global().name(id) + "\" is not part of the store");
+                }
+                Boolean value = variant.getValue(id);
+                if (value != null) {
+                    record[position >>> 6] |= 1L << position;
+                    if (value) {
+                        record[words + (position >>> 6)] |= 1L << position;
+                    }
+                }
+            }
+            for (long word : record) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                buffer.putLong(word);
+            }
+            count++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Sorts the records and completes the header; closing again has no effect.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                flush();
+                if (count > 1) {
+                    Records records = new Records(channel, FileChannel.MapMode.READ_WRITE, recordsOffset, count, words);
+                    records.sort();
+                    records.force();
+                }
+                ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(count);
+                countBuffer.flip();
+                while (countBuffer.hasRemaining()) {
+                    channel.write(countBuffer, 16 + countBuffer.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The records of a store, mapped in chunks of at most {@value #MAX_CHUNK_BYTES} bytes and
+     * addressed by record index. The digit of a record at a position is its value there, with
+     * unassigned sorting last.
+     */
+    private static final class Records {
+        static final int FALSE = 0;
+        static final int TRUE = 1;
+        static final int OPEN = 2;
+
+        private final int words;
+        private final long recordsPerChunk;
+        private final MappedByteBuffer[] mappings;
+        private final LongBuffer[] chunks;
+        private final long size;
+
+        private Records(FileChannel channel, FileChannel.MapMode mode, long offset, long size, int words) throws IOException {
+            this.words = words;
+            this.size = size;
+            long recordBytes = 2L * words * Long.BYTES;
+            this.recordsPerChunk = recordBytes == 0 ? Math.max(size, 1) : Math.max(1, MAX_CHUNK_BYTES / recordBytes);
+            int chunkCount = (int) ((size + recordsPerChunk - 1) / recordsPerChunk);
+            this.mappings = new MappedByteBuffer[chunkCount];
+            this.chunks = new LongBuffer[chunkCount];
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                long first = chunk * recordsPerChunk;
+                long records = Math.min(recordsPerChunk, size - first);
+                mappings[chunk] = channel.map(mode, offset + first * recordBytes, records * recordBytes);
+                chunks[chunk] = mappings[chunk].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+        }
+
+        private long word(long record, int word) {
+            return chunks[(int) (record / recordsPerChunk)].get((int) (record % recordsPerChunk) * 2 * words + word);
+        }
+
+        private void setWord(long record, int word, long value) {
+            chunks[(int) (record / recordsPerChunk)].put((int) (record % recordsPerChunk) * 2 * words + word, value);
+        }
+
+        private int digit(long record, int position) {
+            long bit = 1L << position;
+            if ((word(record, position >>> 6) & bit) == 0L) {
+                return OPEN;
+            }
+            return (word(record, words + (position >>> 6)) & bit) != 0L ? TRUE : FALSE;
+        }
+
+        private boolean matches(long record, int[] queryWords, int count, long[] queryAssigned, long[] queryValues) {
+            for (int i = 0; i < count; i++) {
+                int word = queryWords[i];
+                long assigned = queryAssigned[word];
+                if ((assigned & ~word(record, word)) != 0L
+                        || ((word(record, words + word) ^ queryValues[word]) & assigned) != 0L) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * First record of {@code [lo, hi)} whose digit at {@code position} is at least
+         * {@code digit}; the records of the range must agree on all earlier positions.
+         */
+        private long lowerBound(long lo, long hi, int position, int digit) {
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (digit(mid, position) < digit) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private long[] read(long record) {
+            long[] key = new long[2 * words];
+            for (int word = 0; word < key.length; word++) {
+                key[word] = word(record, word);
+            }
+            return key;
+        }
+
+        private int compare(long record, long[] key) {
+            for (int word = 0; word < words; word++) {
+                long assigned = word(record, word);
+                long values = word(record, words + word);
+                long diff = (assigned ^ key[word]) | (values ^ key[words + word]);
+                if (diff != 0L) {
+                    long bit = Long.lowestOneBit(diff);
+                    int digit = (assigned & bit) == 0L ? OPEN : (values & bit) != 0L ? TRUE : FALSE;
+                    int keyDigit = (key[word] & bit) == 0L ? OPEN : (key[words + word] & bit) != 0L ? TRUE : FALSE;
+                    return Integer.compare(digit, keyDigit);
+                }
+            }
+            return 0;
+        }
+
+        private void swap(long a, long b) {
+            for (int word = 0; word < 2 * words; word++) {
+                long value = word(a, word);
+                setWord(a, word, word(b, word));
+                setWord(b, word, value);
+            }
+        }
+
+        /**
+         * Sorts the records in place by three-way quicksort, so that duplicate records cost no
+         * extra passes; the larger part of a range is deferred, which keeps the stack logarithmic.
+         */
+        private void sort() {
+            Deque<long[]> pending = new ArrayDeque<>();
+            pending.push(new long[] { 0, size });
+            while (!pending.isEmpty()) {
+                long[] range = pending.pop();
+                long lo = range[0];
+                long hi = range[1];
+                while (hi - lo > 1) {
+                    long[] pivot = read(lo + (hi - lo) / 2);
+                    long less = lo;
+                    long greater = hi;
+                    long i = lo;
+                    while (i < greater) {
+                        int order = compare(i, pivot);
+                        if (order < 0) {
+                            swap(less++, i++);
+                        } else if (order > 0) {
+                            swap(i, --greater);
+                        } else {
+                            i++;
+                        }
+                    }
+                    if (less - lo < hi - greater) {
+                        pending.push(new long[] { greater, hi });
+                        hi = less;
+                    } else {
+                        pending.push(new long[] { lo, less });
+                        lo = greater;
+                    }
+                }
+            }
+        }
+
+        private void force() {
+            for (MappedByteBuffer mapping : mappings) {
+                mapping.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of minterms over up to {@link #MAX_VARIABLES} variables, stored implicitly as disjoint
+ * cubes so that memory follows the structure of the function instead of {@code 2^n}. Minterms use
+ * the layout of {@link BooleanExpression#getMintermBitmap(List)}: the first identifier is the most
+ * significant bit.
+ */
+public final class MintermSet {
+    public static final int MAX_VARIABLES = 62;
+
+    private static final int LANE_BITS = 6;
+
+    private final int numVariables;
+    private final long[] values;
+    private final long[] masks;
+
+    private MintermSet(int numVariables, long[] values, long[] masks) {
+        this.numVariables = numVariables;
+        this.values = values;
+        this.masks = masks;
+    }
+
+    public static MintermSet fromBitmap(long[] bitmap, int numVariables) {
+        if (numVariables > BooleanExpression.MAX_BITMAP_IDENTIFIERS) {
+            throw new IllegalArgumentException("Bitmap over " + numVariables + " variables is too large");
+        }
+        Builder builder = new Builder(numVariables);
+        split(bitmap, 0L, 0L, numVariables, builder);
+        return builder.build();
+    }
+
+    private static void split(long[] bitmap, long prefix, long mask, int freeBits, Builder builder) {
+        if (freeBits <= LANE_BITS) {
+            long word = bitmap[(int) (prefix >>> LANE_BITS)] >>> (prefix & (Long.SIZE - 1));
+            builder.addLanes(prefix, mask, word, lowLaneBits(freeBits), freeBits);
+            return;
+        }
+        int firstWord = (int) (prefix >>> LANE_BITS);
+        int numWords = 1 << (freeBits - LANE_BITS);
+        boolean allZero = true;
+        boolean allOnes = true;
+        for (int word = firstWord; word < firstWord + numWords && (allZero || allOnes); word++) {
+            allZero &= bitmap[word] == 0L;
+            allOnes &= bitmap[word] == -1L;
+        }
+        if (allZero) {
+            return;
+        }
+        if (allOnes) {
+            builder.add(prefix, mask);
+            return;
+        }
+        long bit = 1L << (freeBits - 1);
+        split(bitmap, prefix, mask | bit, freeBits - 1, builder);
+        split(bitmap, prefix | bit, mask | bit, freeBits - 1, builder);
+    }
+
+    private static int[] lowLaneBits(int numLanes) {
+        int[] laneBits = new int[numLanes];
+        for (int lane = 0; lane < numLanes; lane++) {
+            laneBits[lane] = lane;
+        }
+        return laneBits;
+    }
+
+    /**
+     * Enumerates the on-set of {@code program}, where slot {@code s} is minterm bit
+     * {@code bitOfSlot[s]}. The search branches on the first unknown slot a three-valued evaluation
+     * reads and stops as soon as that evaluation decides the subspace, so identifiers the program
+     * does not read, or that the assignment so far short-circuits away, stay free in the cube. Once
+     * at most six slots are left they are evaluated 64 assignments at a time.
+     */
+    static MintermSet enumerate(CompiledExpression program, int[] bitOfSlot, int numVariables) {
+        if (numVariables > MAX_VARIABLES) {
+            throw new IllegalArgumentException("Minterm sets support at most " + MAX_VARIABLES + " identifiers, got " + numVariables);
+        }
+        Enumeration enumeration = new Enumeration(program, bitOfSlot, new Builder(numVariables));
+        enumeration.run(0, 0L, 0L);
+        return enumeration.builder.build();
+    }
+
+    public int numVariables() {
+        return numVariables;
+    }
+
+    public int cubeCount() {
+        return values.length;
+    }
+
+    LogicMinimizer.Cube cube(int index) {
+        return new LogicMinimizer.Cube(values[index], masks[index]);
+    }
+
+    /**
+     * Number of minterms in the set.
+     */
+    public long size() {
+        long size = 0;
+        for (long mask : masks) {
+            size += 1L << (numVariables - Long.bitCount(mask));
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public boolean contains(long minterm) {
+        for (int i = 0; i < values.length; i++) {
+            if ((minterm & masks[i]) == values[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes every minterm to {@code action}, cube by cube.
+     */
+    public void forEach(LongConsumer action) {
+        long fullMask = fullMask(numVariables);
+        for (int i = 0; i < values.length; i++) {
+            long free = ~masks[i] & fullMask;
+            long subset = 0L;
+            do {
+                action.accept(values[i] | subset);
+                subset = (subset - free) & free;
+            } while (subset != 0L);
+        }
+    }
+
+    /**
+     * Expands the set into the bitmap layout of {@link BooleanExpression#getMintermBitmap(List)}.
+     */
+    public long[] toBitmap() {
+        if (numVariables > BooleanExpression.MAX_BITMAP_IDENTIFIERS) {
+            throw new IllegalArgumentException("Bitmap over " + numVariables + " identifiers is too large");
+        }
+        long[] bitmap = new long[numVariables <= LANE_BITS ? 1 : 1 << (numVariables - LANE_BITS)];
+        forEach(minterm -> bitmap[(int) (minterm >>> LANE_BITS)] |= 1L << minterm);
+        return bitmap;
+    }
+
+    /**
+     * Existentially quantifies the {@code numberOfProjected} least significant variables: minterm
+     * {@code r} of the result is set iff some minterm {@code m} with
+     * {@code m >>> numberOfProjected == r} is set.
+     */
+    public MintermSet project(int numberOfProjected) {
+        if (numberOfProjected < 0 || numberOfProjected > numVariables) {
+            throw new IllegalArgumentException("Cannot project " + numberOfProjected + " of " + numVariables + " variables");
+        }
+        long[] projectedValues = new long[values.length];
+        long[] projectedMasks = new long[values.length];
+        int[] candidates = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            projectedValues[i] = values[i] >>> numberOfProjected;
+            projectedMasks[i] = masks[i] >>> numberOfProjected;
+            candidates[i] = i;
+        }
+        Builder builder = new Builder(numVariables - numberOfProjected);
+        disjoin(projectedValues, projectedMasks, candidates, candidates.length, 0L, 0L, builder);
+        return builder.build();
+    }
+
+    /**
+     * Covers the union of possibly overlapping cubes with disjoint ones. All candidates intersect
+     * the current cube; it is emitted once one of them contains it, otherwise it is split on the
+     * most significant variable some candidate still fixes.
+     */
+    private static void disjoin(long[] values, long[] masks, int[] candidates, int count,
+            long cubeValues, long cubeMask, Builder builder) {
+        if (count == 0) {
+            return;
+        }
+        long splitBits = 0L;
+        for (int i = 0; i < count; i++) {
+            long unfixed = masks[candidates[i]] & ~cubeMask;
+            if (unfixed == 0L) {
+                builder.add(cubeValues, cubeMask);
+                return;
+            }
+            splitBits |= unfixed;
+        }
+        long bit = Long.highestOneBit(splitBits);
+        for (long value : new long[] {0L, bit}) {
+            int[] next = new int[count];
+            int nextCount = 0;
+            for (int i = 0; i < count; i++) {
+                int candidate = candidates[i];
+                if ((masks[candidate] & bit) == 0L || (values[candidate] & bit) == value) {
+                    next[nextCount++] = candidate;
+                }
+            }
+            disjoin(values, masks, next, nextCount, cubeValues | value, cubeMask | bit, builder);
+        }
+    }
+
+    private static long fullMask(int numVariables) {
+        return numVariables == Long.SIZE ? -1L : (1L << numVariables) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "MintermSet[variables=" + numVariables + ", minterms=" + size() + ", cubes=" + values.length + "]";
+    }
+
+    private static final class Enumeration {
+        private final CompiledExpression program;
+        private final int[] bitOfSlot;
+        private final Builder builder;
+        private final long[] known;
+        private final long[] assignment;
+        private final long[] slotWords;
+        private final long[] stack;
+        private final int[] laneBits = new int[LANE_BITS];
+
+        private Enumeration(CompiledExpression program, int[] bitOfSlot, Builder builder) {
+            this.program = program;
+            this.bitOfSlot = bitOfSlot;
+            this.builder = builder;
+            this.known = new long[program.wordCount()];
+            this.assignment = new long[program.wordCount()];
+            this.slotWords = new long[bitOfSlot.length];
+            this.stack = new long[Math.max(program.maxStack(), 1)];
+        }
+
+        private void run(int assigned, long cubeValues, long cubeMask) {
+            int result = program.evaluateKleene(known, assignment);
+            switch (result & CompiledExpression.KLEENE_RESULT_MASK) {
+                case CompiledExpression.KLEENE_FALSE -> {
+                    return;
+                }
+                case CompiledExpression.KLEENE_TRUE -> {
+                    builder.add(cubeValues, cubeMask);
+                    return;
+                }
+                default -> {
+                }
+            }
+            if (bitOfSlot.length - assigned <= LANE_BITS) {
+                evaluateLanes(cubeValues, cubeMask);
+                return;
+            }
+            int slot = result >>> CompiledExpression.KLEENE_RESULT_BITS;
+            long bit = 1L << bitOfSlot[slot];
+            long slotBit = 1L << slot;
+            known[slot >>> 6] |= slotBit;
+            run(assigned + 1, cubeValues, cubeMask | bit);
+            assignment[slot >>> 6] |= slotBit;
+            run(assigned + 1, cubeValues | bit, cubeMask | bit);
+            known[slot >>> 6] &= ~slotBit;
+            assignment[slot >>> 6] &= ~slotBit;
+        }
+
+        private void evaluateLanes(long cubeValues, long cubeMask) {
+            int numLanes = 0;
+            for (int slot = 0; slot < bitOfSlot.length; slot++) {
+                if (((known[slot >>> 6] >>> slot) & 1L) != 0L) {
+                    slotWords[slot] = ((assignment[slot >>> 6] >>> slot) & 1L) != 0L ? -1L : 0L;
+                } else {
+                    slotWords[slot] = BooleanExpression.LOW_BIT_PATTERNS[numLanes];
+                    laneBits[numLanes++] = bitOfSlot[slot];
+                }
+            }
+            builder.addLanes(cubeValues, cubeMask, program.evaluateWords(slotWords, stack), laneBits, numLanes);
+        }
+    }
+
+    /**
+     * Collects disjoint cubes.
+     */
+    static final class Builder {
+        private final int numVariables;
+        private long[] values = new long[16];
+        private long[] masks = new long[16];
+        private int size;
+
+        Builder(int numVariables) {
+            if (numVariables > MAX_VARIABLES) {
+                throw new IllegalArgumentException("Minterm sets support at most " + MAX_VARIABLES + " identifiers, got " + numVariables);
+            }
+            this.numVariables = numVariables;
+        }
+
+        void add(long cubeValues, long cubeMask) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                masks = Arrays.copyOf(masks, size * 2);
+            }
+            values[size] = cubeValues;
+            masks[size] = cubeMask;
+            size++;
+        }
+
+        /**
+         * Adds the lanes of {@code word} that are set, where lane {@code l} assigns bit {@code j}
+         * of {@code l} to minterm bit {@code laneBits[j]} within the given cube.
+         */
+        void addLanes(long cubeValues, long cubeMask, long word, int[] laneBits, int numLanes) {
+            addLanes(cubeValues, cubeMask, word, laneBits, numLanes, 0);
+        }
+
+        private void addLanes(long cubeValues, long cubeMask, long word, int[] laneBits, int freeLanes, int laneStart) {
+            int blockSize = 1 << freeLanes;
+            long blockMask = blockSize == Long.SIZE ? -1L : (1L << blockSize) - 1;
+            long block = (word >>> laneStart) & blockMask;
+            if (block == 0L) {
+                return;
+            }
+            if (block == blockMask) {
+                add(cubeValues, cubeMask);
+                return;
+            }
+            int lane = freeLanes - 1;
+            long bit = 1L << laneBits[lane];
+            addLanes(cubeValues, cubeMask | bit, word, laneBits, lane, laneStart);
+            addLanes(cubeValues | bit, cubeMask | bit, word, laneBits, lane, laneStart + (blockSize >>> 1));
+        }
+
+        MintermSet build() {
+            return new MintermSet(numVariables, Arrays.copyOf(values, size), Arrays.copyOf(masks, size));
+        }
+    }
+}
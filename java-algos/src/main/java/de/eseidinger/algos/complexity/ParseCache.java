@@ -0,0 +1,160 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of parsed expressions keyed by their source text with insignificant whitespace removed
+ * and by whether they were simplified. Entries are spread over independently locked LRU segments; parsing happens outside the locks.
+ */
+public final class ParseCache {
+    static final String CAPACITY_PROPERTY = "de.eseidinger.algos.complexity.parseCacheSize";
+    static final int DEFAULT_CAPACITY = Integer.getInteger(CAPACITY_PROPERTY, 16_384);
+
+    private static final ParseCache GLOBAL = new ParseCache(DEFAULT_CAPACITY);
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ParseCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment((capacity + SEGMENTS - 1) / SEGMENTS);
+        }
+    }
+
+    /**
+     * Cache in front of {@link BooleanExpression#BooleanExpression(String)}.
+     */
+    public static ParseCache global() {
+        return GLOBAL;
+    }
+
+    BooleanExpression get(String source, boolean simplified, Function<String, BooleanExpression> parser) {
+        Key key = new Key(normalize(source), simplified);
+        Segment segment = segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+        BooleanExpression expression;
+        synchronized (segment) {
+            expression = segment.get(key);
+        }
+        if (expression != null) {
+            hits.increment();
+            return expression;
+        }
+        misses.increment();
+        BooleanExpression parsed = parser.apply(source);
+        if (segment.capacity == 0) {
+            return parsed;
+        }
+        synchronized (segment) {
+            expression = segment.putIfAbsent(key, parsed);
+        }
+        return expression != null ? expression : parsed;
+    }
+
+    /**
+     * Removes whitespace except for a single space where it separates two identifier characters,
+     * so that invalid input such as {@code "A B"} never maps to the key of {@code "AB"}.
+     */
+    static String normalize(String source) {
+        int length = source.length();
+        int i = 0;
+        while (i < length && !isWhitespace(source.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return source;
+        }
+        StringBuilder normalized = new StringBuilder(length).append(source, 0, i);
+        boolean pendingSpace = false;
+        for (; i < length; i++) {
+            char c = source.charAt(i);
+            if (isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace && normalized.length() > 0
+                    && isIdentifierPart(normalized.charAt(normalized.length() - 1)) && isIdentifierPart(c)) {
+                normalized.append(' ');
+            }
+            pendingSpace = false;
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParseCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private record Key(String source, boolean simplified) {
+    }
+
+    private final class Segment extends LinkedHashMap<Key, BooleanExpression> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BooleanExpression> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
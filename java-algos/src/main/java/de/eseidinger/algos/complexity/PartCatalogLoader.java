@@ -0,0 +1,210 @@
+package de.eseidinger.algos.complexity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads part catalogs with one {@code name: expression} line per part. The file is split into
+ * chunks on line boundaries, every chunk is memory-mapped and parsed on a fork-join pool, and all
+ * conditions are parsed into one shared {@link ExpressionStore}. Blank lines and lines starting
+ * with {@code #} are skipped.
+ */
+class PartCatalogLoader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ExpressionStore store;
+    private final ForkJoinPool pool;
+    private long linesLoaded;
+    private long elapsedNanos;
+
+    public PartCatalogLoader() {
+        this(new ExpressionStore(), ForkJoinPool.commonPool());
+    }
+
+    public PartCatalogLoader(ExpressionStore store, ForkJoinPool pool) {
+        this.store = store;
+        this.pool = pool;
+    }
+
+    public ExpressionStore getStore() {
+        return store;
+    }
+
+    public List<Part> load(Path path) throws IOException {
+        long start = System.nanoTime();
+        List<Part> parts;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel, channel.size());
+            ChunkResult result;
+            try {
+                result = pool.invoke(new ChunkTask(channel, boundaries, 0, boundaries.length - 1));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            parts = result.parts;
+            linesLoaded = result.lines;
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return parts;
+    }
+
+    /**
+     * Number of lines read by the last {@link #load(Path)}, including skipped ones.
+     */
+    public long getLinesLoaded() {
+        return linesLoaded;
+    }
+
+    public double getLinesPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : linesLoaded * 1e9 / elapsedNanos;
+    }
+
+    private long[] chunkBoundaries(FileChannel channel, long size) throws IOException {
+        long chunkSize = size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+        chunkSize = Math.min(Math.max(chunkSize, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long position = 0;
+        while (position < size) {
+            long next = position + chunkSize >= size ? size : nextLineStart(channel, position + chunkSize, size);
+            if (next - position > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Catalog line at byte offset " + position + " is too long");
+            }
+            boundaries.add(next);
+            position = next;
+        }
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return size;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private record ChunkResult(List<Part> parts, long lines) {
+    }
+
+    private final class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(FileChannel channel, long[] boundaries, int from, int to) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(channel, boundaries, from, middle);
+                ChunkTask right = new ChunkTask(channel, boundaries, middle, to);
+                right.fork();
+                ChunkResult leftResult = left.compute();
+                ChunkResult rightResult = right.join();
+                List<Part> parts = new ArrayList<>(leftResult.parts.size() + rightResult.parts.size());
+                parts.addAll(leftResult.parts);
+                parts.addAll(rightResult.parts);
+                return new ChunkResult(parts, leftResult.lines + rightResult.lines);
+            }
+            if (to == from) {
+                return new ChunkResult(List.of(), 0);
+            }
+            try {
+                return parseChunk(boundaries[from], boundaries[to]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ChunkResult parseChunk(long start, long end) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            List<Part> parts = new ArrayList<>();
+            long lines = 0;
+            byte[] line = new byte[256];
+            int limit = buffer.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int length = lineEnd - lineStart;
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.get(lineStart, line, 0, length);
+                Part part = parseLine(line, length, start + lineStart);
+                if (part != null) {
+                    parts.add(part);
+                }
+                lines++;
+                lineStart = lineEnd + 1;
+            }
+            return new ChunkResult(parts, lines);
+        }
+    }
+
+    private Part parseLine(byte[] line, int length, long offset) {
+        int begin = 0;
+        int end = length;
+        while (begin < end && isWhitespace(line[begin])) {
+            begin++;
+        }
+        while (end > begin && isWhitespace(line[end - 1])) {
+            end--;
+        }
+        if (begin == end || line[begin] == '#') {
+            return null;
+        }
+        int colon = begin;
+        while (colon < end && line[colon] != ':') {
+            colon++;
+        }
+        if (colon == end) {
+            throw new IllegalArgumentException("Expected \"name: expression\" at byte offset " + offset);
+        }
+        String name = new String(line, begin, colon - begin, StandardCharsets.UTF_8).trim();
+        String expression = new String(line, colon + 1, end - colon - 1, StandardCharsets.UTF_8);
+        try {
+            return new Part(name, new Condition(new BooleanExpression(expression, store)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid condition of \"" + name + "\" at byte offset " + offset, e);
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+    }
+}
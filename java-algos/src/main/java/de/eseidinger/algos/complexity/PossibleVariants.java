@@ -0,0 +1,22 @@
+package de.eseidinger.algos.complexity;
+
+/**
+ * A set of possible variants that can tell whether a partial variant extends to one of them.
+ */
+public interface PossibleVariants {
+    /**
+     * Whether some variant of the set assigns every symbol {@code variant} assigns, to the same
+     * value.
+     */
+    boolean isPossible(Variant variant);
+
+    /**
+     * Identifies the possible variants that extend {@code variant}, restricted to the symbols it
+     * leaves open: two variants with the same non-negative id extend to the same completions.
+     * Only variants that assign a prefix of the set's symbol order need an id; the default, -1,
+     * means the set cannot tell.
+     */
+    default int completionId(Variant variant) {
+        return -1;
+    }
+}
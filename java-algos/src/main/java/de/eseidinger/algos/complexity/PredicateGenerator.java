@@ -0,0 +1,205 @@
+package de.eseidinger.algos.complexity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Translates a {@link CompiledExpression} into a hidden class implementing {@link BitmaskPredicate}.
+ * The generated methods are branch-free: every identifier is loaded as an int 0/1 and combined with
+ * {@code iand}/{@code ior}/{@code ixor}, so the class needs no stack map frames and C2 can compile
+ * each condition like handwritten bit twiddling.
+ */
+final class PredicateGenerator {
+    private static final String CLASS_NAME = "de/eseidinger/algos/complexity/GeneratedPredicate";
+    private static final String INTERFACE_NAME = "de/eseidinger/algos/complexity/BitmaskPredicate";
+    private static final int CLASS_VERSION = 65;
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int THIS_CLASS = 2;
+    private static final int SUPER_CLASS = 4;
+    private static final int INTERFACE = 6;
+    private static final int INIT_NAME = 7;
+    private static final int INIT_DESCRIPTOR = 8;
+    private static final int SUPER_INIT = 10;
+    private static final int CODE = 11;
+    private static final int EVALUATE_NAME = 12;
+    private static final int EVALUATE_LONG_DESCRIPTOR = 13;
+    private static final int EVALUATE_ARRAY_DESCRIPTOR = 14;
+    private static final int CONSTANT_POOL_COUNT = 15;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LLOAD_1 = 0x1f;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int LALOAD = 0x2f;
+    private static final int IAND = 0x7e;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int LUSHR = 0x7d;
+    private static final int L2I = 0x88;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+
+    private PredicateGenerator() {
+    }
+
+    /**
+     * Returns a generated predicate, or {@code null} if the expression does not fit into a single
+     * method or the class cannot be defined.
+     */
+    static BitmaskPredicate generate(CompiledExpression expression) {
+        if (expression.slotCount() > Short.MAX_VALUE * Long.SIZE) {
+            return null;
+        }
+        byte[] longCode = emitBody(expression, false);
+        byte[] arrayCode = emitBody(expression, true);
+        if (longCode.length > MAX_CODE_LENGTH || arrayCode.length > MAX_CODE_LENGTH) {
+            return null;
+        }
+        int maxStack = expression.maxStack() + 3;
+        try {
+            byte[] classBytes = emitClass(longCode, arrayCode, maxStack);
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            return (BitmaskPredicate) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            if (e instanceof Error && !(e instanceof LinkageError)) {
+                throw (Error) e;
+            }
+            return null;
+        }
+    }
+
+    private static byte[] emitBody(CompiledExpression expression, boolean fromArray) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        for (int instruction : expression.program()) {
+            switch (instruction & CompiledExpression.OP_MASK) {
+                case CompiledExpression.LOAD -> {
+                    int slot = instruction >>> CompiledExpression.OP_BITS;
+                    if (fromArray) {
+                        code.write(ALOAD_1);
+                        emitIntConstant(code, slot >>> 6);
+                        code.write(LALOAD);
+                    } else {
+                        code.write(LLOAD_1);
+                    }
+                    emitIntConstant(code, slot & 63);
+                    code.write(LUSHR);
+                    code.write(L2I);
+                    code.write(ICONST_1);
+                    code.write(IAND);
+                }
+                case CompiledExpression.CONST -> code.write(
+                        (instruction >>> CompiledExpression.OP_BITS) != 0 ? ICONST_1 : ICONST_0);
+                case CompiledExpression.NOT -> {
+                    code.write(ICONST_1);
+                    code.write(IXOR);
+                }
+                case CompiledExpression.AND -> code.write(IAND);
+                case CompiledExpression.OR -> code.write(IOR);
+                default -> {
+                }
+            }
+        }
+        code.write(IRETURN);
+        return code.toByteArray();
+    }
+
+    private static void emitIntConstant(ByteArrayOutputStream code, int value) {
+        if (value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else {
+            code.write(SIPUSH);
+            code.write(value >>> 8);
+            code.write(value);
+        }
+    }
+
+    private static byte[] emitClass(byte[] longCode, byte[] arrayCode, int maxStack) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(CLASS_VERSION);
+
+        out.writeShort(CONSTANT_POOL_COUNT);
+        writeUtf8(out, CLASS_NAME);
+        writeClass(out, 1);
+        writeUtf8(out, "java/lang/Object");
+        writeClass(out, 3);
+        writeUtf8(out, INTERFACE_NAME);
+        writeClass(out, 5);
+        writeUtf8(out, "<init>");
+        writeUtf8(out, "()V");
+        out.writeByte(CONSTANT_NAME_AND_TYPE);
+        out.writeShort(INIT_NAME);
+        out.writeShort(INIT_DESCRIPTOR);
+        out.writeByte(CONSTANT_METHODREF);
+        out.writeShort(SUPER_CLASS);
+        out.writeShort(9);
+        writeUtf8(out, "Code");
+        writeUtf8(out, "evaluate");
+        writeUtf8(out, "(J)Z");
+        writeUtf8(out, "([J)Z");
+
+        out.writeShort(ACC_FINAL | ACC_SUPER);
+        out.writeShort(THIS_CLASS);
+        out.writeShort(SUPER_CLASS);
+        out.writeShort(1);
+        out.writeShort(INTERFACE);
+        out.writeShort(0);
+
+        out.writeShort(3);
+        byte[] initCode = { (byte) ALOAD_0, (byte) INVOKESPECIAL, 0, (byte) SUPER_INIT, (byte) RETURN };
+        writeMethod(out, INIT_NAME, INIT_DESCRIPTOR, 1, 1, initCode);
+        writeMethod(out, EVALUATE_NAME, EVALUATE_LONG_DESCRIPTOR, maxStack, 3, longCode);
+        writeMethod(out, EVALUATE_NAME, EVALUATE_ARRAY_DESCRIPTOR, maxStack, 2, arrayCode);
+
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeUtf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(CONSTANT_UTF8);
+        out.writeUTF(value);
+    }
+
+    private static void writeClass(DataOutputStream out, int nameIndex) throws IOException {
+        out.writeByte(CONSTANT_CLASS);
+        out.writeShort(nameIndex);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int maxStack, int maxLocals,
+            byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(CODE);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+}
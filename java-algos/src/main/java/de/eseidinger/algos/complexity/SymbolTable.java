@@ -0,0 +1,129 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.Arrays;
+
+/**
+ * Maps symbol names to dense int ids. Lookups of already interned names are lock-free and can be
+ * done straight from a character range without allocating a {@code String}; only new names take
+ * the lock.
+ */
+public final class SymbolTable {
+    private static final SymbolTable GLOBAL = new SymbolTable();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+    private volatile int[] table = new int[INITIAL_CAPACITY * 2];
+    private volatile int size;
+
+    public static SymbolTable global() {
+        return GLOBAL;
+    }
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    public int intern(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int id = find(names, table, source, start, end, hash);
+        if (id >= 0) {
+            return id;
+        }
+        return insert(source, start, end, hash);
+    }
+
+    /**
+     * Returns the id of {@code name} or {@code -1} if it was never interned.
+     */
+    public int find(String name) {
+        return find(names, table, name, 0, name.length(), hash(name, 0, name.length()));
+    }
+
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown symbol id " + id);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static int find(String[] names, int[] table, CharSequence source, int start, int end, int hash) {
+        int mask = table.length - 1;
+        for (int index = hash & mask; ; index = (index + 1) & mask) {
+            int entry = table[index];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            String name = id < names.length ? names[id] : null;
+            if (name == null) {
+                return -1;
+            }
+            if (matches(name, source, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    private synchronized int insert(CharSequence source, int start, int end, int hash) {
+        int id = find(names, table, source, start, end, hash);
+        if (id >= 0) {
+            return id;
+        }
+        id = size;
+        String[] currentNames = names;
+        if (id == currentNames.length) {
+            currentNames = Arrays.copyOf(currentNames, id * 2);
+        }
+        currentNames[id] = source.subSequence(start, end).toString();
+        names = currentNames;
+        int[] currentTable = table;
+        if ((id + 1) * 2 > currentTable.length) {
+            currentTable = rehash(currentNames, id, currentTable.length * 2);
+        }
+        put(currentTable, hash, id);
+        table = currentTable;
+        size = id + 1;
+        return id;
+    }
+
+    private static int[] rehash(String[] names, int count, int capacity) {
+        int[] rehashed = new int[capacity];
+        for (int id = 0; id < count; id++) {
+            put(rehashed, hash(names[id], 0, names[id].length()), id);
+        }
+        return rehashed;
+    }
+
+    private static void put(int[] table, int hash, int id) {
+        int mask = table.length - 1;
+        int index = hash & mask;
+        while (table[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        table[index] = id + 1;
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,7 +1,7 @@
 package de.eseidinger.algos.complexity;
 
 public class Token {
-    enum Type { AND, OR, NOT, LPAREN, RPAREN, IDENTIFIER }
+    enum Type { AND, OR, NOT, LPAREN, RPAREN, IDENTIFIER, TRUE, FALSE }
     Type type;
     String value;
 
@@ -1,22 +1,72 @@
 package de.eseidinger.algos.complexity;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.Comparator;
 
 
+/**
+ * Assignment of boolean values to a set of symbols, some of which may still be open. Symbols are
+ * bits at their {@link SymbolTable#global()} id in three masks: the symbols of the variant, the
+ * assigned ones, and their values. The masks start at the word of the lowest id in the variant,
+ * so a variant over a few symbols takes a few words however many symbols the table holds.
+ * Derivation, equality and subsumption are word operations on these masks; the attribute list is
+ * a view in the order the symbols were given in.
+ */
 public class Variant {
-    private final List<Attribute> attributes;
+    private final int[] order;
+    private final int base;
+    private final long[] symbols;
+    private final long[] assigned;
+    private final long[] values;
 
     public Variant(List<Attribute> attributes) {
-        this.attributes = attributes;
+        int[] ids = new int[attributes.size()];
+        int minId = Integer.MAX_VALUE;
+        int maxId = -1;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = attributes.get(i).getSymbolId();
+            minId = Math.min(minId, ids[i]);
+            maxId = Math.max(maxId, ids[i]);
+        }
+        this.order = ids;
+        this.base = maxId < 0 ? 0 : minId >>> 6;
+        this.symbols = new long[maxId < 0 ? 0 : (maxId >>> 6) - base + 1];
+        this.assigned = new long[symbols.length];
+        this.values = new long[symbols.length];
+        for (Attribute attribute : attributes) {
+            int id = attribute.getSymbolId();
+            int word = word(id);
+            symbols[word] |= 1L << id;
+            if (attribute.getValue() != null) {
+                assigned[word] |= 1L << id;
+                if (attribute.getValue()) {
+                    values[word] |= 1L << id;
+                }
+            }
+        }
+    }
+
+    private Variant(int[] order, int base, long[] symbols, long[] assigned, long[] values) {
+        this.order = order;
+        this.base = base;
+        this.symbols = symbols;
+        this.assigned = assigned;
+        this.values = values;
     }
 
     @Override
     public String toString() {
-        return "{" + attributes.stream().map(Attribute::toString).collect(Collectors.joining(", ")) + "}";
+        return "{" + getAttributes().stream().map(Attribute::toString).collect(Collectors.joining(", ")) + "}";
     }
 
     @Override
@@ -24,31 +74,94 @@ public class Variant {
         if (this == obj) return true;
         if (!(obj instanceof Variant)) return false;
         Variant other = (Variant) obj;
-        return attributes.equals(other.attributes);
+        return base == other.base
+                && Arrays.equals(symbols, other.symbols)
+                && Arrays.equals(assigned, other.assigned)
+                && Arrays.equals(values, other.values);
     }
 
     @Override
     public int hashCode() {
-        return attributes.hashCode();
+        return 31 * (31 * (31 * base + Arrays.hashCode(symbols)) + Arrays.hashCode(assigned)) + Arrays.hashCode(values);
+    }
+
+    /**
+     * The attributes in the order the variant was created with.
+     */
+    public List<Attribute> getAttributes() {
+        List<Attribute> attributes = new ArrayList<>(order.length);
+        for (int id : order) {
+            attributes.add(Attribute.of(id, getValue(id)));
+        }
+        return Collections.unmodifiableList(attributes);
     }
 
     public List<Attribute> getSortedAttributes() {
-        return attributes.stream()
+        return getAttributes().stream()
                 .sorted(Comparator.comparing(Attribute::getSymbol))
                 .collect(Collectors.toList());
     }
 
     public Map<String, Boolean> toDict() {
-        return attributes.stream()
-                .filter(attr -> attr.getValue() != null)
-                .collect(Collectors.toMap(Attribute::getSymbol, Attribute::getValue));
+        SymbolTable table = SymbolTable.global();
+        Map<String, Boolean> dict = new HashMap<>();
+        for (int id : order) {
+            Boolean value = getValue(id);
+            if (value != null) {
+                dict.put(table.name(id), value);
+            }
+        }
+        return dict;
+    }
+
+    /**
+     * Global ids of the symbols of the variant, in attribute order; must not be modified.
+     */
+    int[] symbolIds() {
+        return order;
+    }
+
+    /**
+     * Value of the symbol with global id {@code symbolId}, {@code null} if it is unassigned or
+     * not part of the variant.
+     */
+    Boolean getValue(int symbolId) {
+        int word = word(symbolId);
+        if (word < 0 || word >= assigned.length || ((assigned[word] >>> symbolId) & 1L) == 0L) {
+            return null;
+        }
+        return ((values[word] >>> symbolId) & 1L) != 0L;
+    }
+
+    /**
+     * Index of the mask word holding the bit of {@code symbolId}, outside the masks if the
+     * variant has no symbol in that word.
+     */
+    private int word(int symbolId) {
+        return (symbolId >>> 6) - base;
+    }
+
+    /**
+     * Whether {@code symbolId} is a symbol of the variant.
+     */
+    private boolean hasSymbol(int symbolId) {
+        int word = word(symbolId);
+        return word >= 0 && word < symbols.length && ((symbols[word] >>> symbolId) & 1L) != 0L;
     }
 
+    /**
+     * Whether this variant assigns every symbol {@code otherVariant} assigns, to the same value.
+     */
     public boolean isDerivedFromOrEqual(Variant otherVariant) {
-        Map<String, Boolean> thisDict = this.toDict();
-        Map<String, Boolean> otherDict = otherVariant.toDict();
-        for (Map.Entry<String, Boolean> entry : otherDict.entrySet()) {
-            if (entry.getValue() != null && !Objects.equals(thisDict.get(entry.getKey()), entry.getValue())) {
+        long[] otherAssigned = otherVariant.assigned;
+        long[] otherValues = otherVariant.values;
+        int shift = otherVariant.base - base;
+        for (int word = 0; word < otherAssigned.length; word++) {
+            int own = word + shift;
+            boolean inside = own >= 0 && own < assigned.length;
+            long mine = inside ? assigned[own] : 0L;
+            long value = inside ? values[own] : 0L;
+            if ((otherAssigned[word] & ~mine) != 0L || ((value ^ otherValues[word]) & otherAssigned[word]) != 0L) {
                 return false;
             }
         }
@@ -56,35 +169,250 @@ public class Variant {
     }
 
     public Variant deriveVariant(String symbol, boolean value) {
-        List<Attribute> newAttributes = attributes.stream()
-                .map(attr -> attr.getSymbol().equals(symbol) ? new Attribute(attr.getSymbol(), value) : attr)
-                .collect(Collectors.toList());
-        return new Variant(newAttributes);
+        int id = SymbolTable.global().intern(symbol);
+        if (!hasSymbol(id)) {
+            return this;
+        }
+        int word = word(id);
+        long[] newAssigned = assigned.clone();
+        long[] newValues = values.clone();
+        newAssigned[word] |= 1L << id;
+        if (value) {
+            newValues[word] |= 1L << id;
+        } else {
+            newValues[word] &= ~(1L << id);
+        }
+        return new Variant(order, base, symbols, newAssigned, newValues);
     }
 
     public List<Variant> deriveVariants(List<String> nextSymbols, List<boolean[]> values) {
-        return values.stream().map(valueSet -> {
-            List<Attribute> newAttributes = attributes.stream().map(attr -> {
-                int index = nextSymbols.indexOf(attr.getSymbol());
-                if (index != -1) {
-                    return new Attribute(attr.getSymbol(), valueSet[index]);
+        int[] nextIds = new int[nextSymbols.size()];
+        long[] nextMask = new long[symbols.length];
+        for (int i = 0; i < nextIds.length; i++) {
+            int id = SymbolTable.global().intern(nextSymbols.get(i));
+            nextIds[i] = hasSymbol(id) ? id : -1;
+            if (nextIds[i] >= 0) {
+                nextMask[word(id)] |= 1L << id;
+            }
+        }
+        long[] newAssigned = assigned.clone();
+        for (int word = 0; word < newAssigned.length; word++) {
+            newAssigned[word] |= nextMask[word];
+        }
+        List<Variant> variants = new ArrayList<>(values.size());
+        for (boolean[] valueSet : values) {
+            long[] newValues = this.values.clone();
+            for (int word = 0; word < newValues.length; word++) {
+                newValues[word] &= ~nextMask[word];
+            }
+            for (int i = 0; i < nextIds.length; i++) {
+                if (nextIds[i] >= 0 && valueSet[i]) {
+                    newValues[word(nextIds[i])] |= 1L << nextIds[i];
                 }
-                return attr;
-            }).collect(Collectors.toList());
-            return new Variant(newAttributes);
-        }).collect(Collectors.toList());
+            }
+            variants.add(new Variant(order, base, symbols, newAssigned, newValues));
+        }
+        return variants;
+    }
+
+    /**
+     * Lazily derives the variants that assign {@code nextSymbols} in every combination, in the
+     * order of {@link VariantNode#boolFromInteger(int, int)}: the first symbol is the most
+     * significant bit. The stream splits into halves that share a prefix of assigned symbols.
+     */
+    public Stream<Variant> streamDerivedVariants(List<String> nextSymbols) {
+        return StreamSupport.stream(new DerivedVariants(this, nextSymbols, null), false);
+    }
+
+    /**
+     * {@link #streamDerivedVariants(List)} restricted to the possible ones. Each prefix of
+     * {@code nextSymbols} is checked once, and the whole range of combinations below a prefix that
+     * is not possible is skipped.
+     */
+    public Stream<Variant> streamDerivedVariants(List<String> nextSymbols, PossibleVariants possibleVariants) {
+        return StreamSupport.stream(new DerivedVariants(this, nextSymbols, possibleVariants), false);
     }
 
     public boolean isPossible(List<Variant> possibleVariants) {
         return possibleVariants.stream().anyMatch(variant -> variant.isDerivedFromOrEqual(this));
     }
 
+    /**
+     * {@link #isPossible(List)} against {@code possibleVariants}, for instance a
+     * {@link VariantIndex} or a {@link MappedVariantStore}.
+     */
+    public boolean isPossible(PossibleVariants possibleVariants) {
+        return possibleVariants.isPossible(this);
+    }
+
     public boolean isFinal(List<String> relevantSymbols) {
-        return attributes.stream().allMatch(attr ->
-                relevantSymbols.contains(attr.getSymbol()) ? attr.getValue() != null : true);
+        return isFinal(symbolIdMask(relevantSymbols));
+    }
+
+    /**
+     * Whether every symbol of the variant that is set in the mask {@code relevantSymbolIds} of
+     * {@link #symbolIdMask(List)} is assigned. Only the words of the variant are looked at.
+     */
+    boolean isFinal(long[] relevantSymbolIds) {
+        int words = Math.min(symbols.length, relevantSymbolIds.length - base);
+        for (int word = 0; word < words; word++) {
+            if ((symbols[word] & ~assigned[word] & relevantSymbolIds[base + word]) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mask with the bits of the global ids of {@code symbols} set.
+     */
+    static long[] symbolIdMask(List<String> symbols) {
+        int[] ids = new int[symbols.size()];
+        int maxId = -1;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = SymbolTable.global().intern(symbols.get(i));
+            maxId = Math.max(maxId, ids[i]);
+        }
+        long[] mask = new long[maxId < 0 ? 0 : (maxId >>> 6) + 1];
+        for (int id : ids) {
+            mask[id >>> 6] |= 1L << id;
+        }
+        return mask;
     }
 
     public boolean isEmpty() {
-        return attributes.stream().allMatch(attr -> attr.getValue() == null);
+        for (long word : assigned) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combinations {@code [index, end)} of the next symbols of a parent variant. With possible
+     * variants given, {@code verified} is the number of leading next symbols whose assignment by
+     * {@code index} is known to be possible.
+     */
+    private static final class DerivedVariants implements Spliterator<Variant> {
+        private final Variant parent;
+        private final int[] nextIds;
+        private final long[] nextMask;
+        private final PossibleVariants possibleVariants;
+        private long index;
+        private long end;
+        private int verified;
+
+        private DerivedVariants(Variant parent, List<String> nextSymbols, PossibleVariants possibleVariants) {
+            if (nextSymbols.size() >= Long.SIZE - 1) {
+                throw new IllegalArgumentException("Too many symbols to derive: " + nextSymbols.size());
+            }
+            this.parent = parent;
+            this.nextIds = new int[nextSymbols.size()];
+            this.nextMask = new long[parent.symbols.length];
+            for (int i = 0; i < nextIds.length; i++) {
+                int id = SymbolTable.global().intern(nextSymbols.get(i));
+                nextIds[i] = parent.hasSymbol(id) ? id : -1;
+                if (nextIds[i] >= 0) {
+                    nextMask[parent.word(id)] |= 1L << id;
+                }
+            }
+            this.possibleVariants = possibleVariants;
+            this.end = nextIds.length == 0 && possibleVariants != null && !possibleVariants.isPossible(parent) ? 0L : 1L << nextIds.length;
+        }
+
+        private DerivedVariants(DerivedVariants other, long end) {
+            this.parent = other.parent;
+            this.nextIds = other.nextIds;
+            this.nextMask = other.nextMask;
+            this.possibleVariants = other.possibleVariants;
+            this.index = other.index;
+            this.end = end;
+            this.verified = other.verified;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Variant> action) {
+            int k = nextIds.length;
+            while (index < end) {
+                Variant candidate = null;
+                int depth = possibleVariants == null ? k : verified;
+                while (depth < k) {
+                    candidate = variantAt(index, depth + 1);
+                    if (!possibleVariants.isPossible(candidate)) {
+                        break;
+                    }
+                    depth++;
+                }
+                if (depth == k) {
+                    if (candidate == null) {
+                        candidate = variantAt(index, k);
+                    }
+                    advanceTo(index + 1, k);
+                    action.accept(candidate);
+                    return true;
+                }
+                int shift = k - depth - 1;
+                advanceTo(((index >>> shift) + 1) << shift, depth);
+            }
+            return false;
+        }
+
+        private void advanceTo(long next, int depth) {
+            verified = Math.max(0, Math.min(depth, commonPrefix(index, next)));
+            index = Math.min(next, end);
+        }
+
+        private int commonPrefix(long a, long b) {
+            return nextIds.length - (Long.SIZE - Long.numberOfLeadingZeros(a ^ b));
+        }
+
+        /**
+         * The parent with the first {@code depth} next symbols assigned as in combination
+         * {@code combination}.
+         */
+        private Variant variantAt(long combination, int depth) {
+            long[] newAssigned = parent.assigned.clone();
+            long[] newValues = parent.values.clone();
+            for (int word = 0; word < newAssigned.length; word++) {
+                newValues[word] &= ~nextMask[word];
+            }
+            int k = nextIds.length;
+            for (int i = 0; i < depth; i++) {
+                int id = nextIds[i];
+                if (id < 0) {
+                    continue;
+                }
+                int word = parent.word(id);
+                newAssigned[word] |= 1L << id;
+                if (((combination >>> (k - i - 1)) & 1L) != 0L) {
+                    newValues[word] |= 1L << id;
+                }
+            }
+            return new Variant(parent.order, parent.base, parent.symbols, newAssigned, newValues);
+        }
+
+        @Override
+        public Spliterator<Variant> trySplit() {
+            if (end - index < 2) {
+                return null;
+            }
+            int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(index ^ (end - 1));
+            long mid = ((end - 1) >>> shift) << shift;
+            DerivedVariants prefix = new DerivedVariants(this, mid);
+            advanceTo(mid, verified);
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            int sized = possibleVariants == null ? SIZED | SUBSIZED : 0;
+            return ORDERED | NONNULL | IMMUTABLE | sized;
+        }
     }
 }
@@ -0,0 +1,123 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Variants packed into bit columns: per symbol, bit {@code i} of the value column holds the value
+ * of variant {@code i} and bit {@code i} of the known column whether the variant assigns the
+ * symbol at all. A condition is evaluated once per block of columns instead of once per variant.
+ */
+public final class VariantBatch {
+    /**
+     * Words evaluated together; a block of 64 words covers 4096 variants and keeps the evaluation
+     * stack in the L1 cache.
+     */
+    static final int BLOCK_WORDS = 64;
+
+    private final List<Variant> variants;
+    private int[] columnOfSymbol = new int[0];
+    private final List<long[]> valueColumns = new ArrayList<>();
+    private final List<long[]> knownColumns = new ArrayList<>();
+    private final int words;
+
+    public VariantBatch(List<Variant> variants) {
+        this.variants = List.copyOf(variants);
+        this.words = (this.variants.size() + Long.SIZE - 1) / Long.SIZE;
+        for (int i = 0; i < this.variants.size(); i++) {
+            long bit = 1L << i;
+            Variant variant = this.variants.get(i);
+            for (int symbolId : variant.symbolIds()) {
+                Boolean value = variant.getValue(symbolId);
+                if (value == null) {
+                    continue;
+                }
+                int column = column(symbolId);
+                knownColumns.get(column)[i >>> 6] |= bit;
+                if (value) {
+                    valueColumns.get(column)[i >>> 6] |= bit;
+                }
+            }
+        }
+    }
+
+    private int column(int symbolId) {
+        if (symbolId >= columnOfSymbol.length) {
+            int length = columnOfSymbol.length;
+            columnOfSymbol = Arrays.copyOf(columnOfSymbol, Math.max(symbolId + 1, 2 * length));
+            Arrays.fill(columnOfSymbol, length, columnOfSymbol.length, -1);
+        }
+        int column = columnOfSymbol[symbolId];
+        if (column < 0) {
+            column = valueColumns.size();
+            columnOfSymbol[symbolId] = column;
+            valueColumns.add(new long[words]);
+            knownColumns.add(new long[words]);
+        }
+        return column;
+    }
+
+    public int size() {
+        return variants.size();
+    }
+
+    public Variant get(int index) {
+        return variants.get(index);
+    }
+
+    /**
+     * Checks every variant of the batch like {@link BooleanExpression#isSatisfiable(Variant)}: bit
+     * {@code i} of the result is set iff variant {@code i} can still satisfy {@code expression}.
+     * Variants that assign every symbol of the expression are evaluated column-wise; only
+     * variants that leave one of them open fall back to the completion search.
+     *
+     * @return a bitmap of {@code ceil(size() / 64)} words
+     */
+    public long[] check(BooleanExpression expression) {
+        CompiledExpression program = expression.getProgram();
+        long[] result = new long[words];
+        long[][] slotColumns = new long[program.slotCount()][];
+        long[] open = new long[words];
+        long[] missing = null;
+        for (int slot = 0; slot < slotColumns.length; slot++) {
+            int symbolId = program.globalSymbolId(slot);
+            int column = symbolId >= 0 && symbolId < columnOfSymbol.length ? columnOfSymbol[symbolId] : -1;
+            if (column < 0) {
+                if (missing == null) {
+                    missing = new long[words];
+                }
+                slotColumns[slot] = missing;
+                Arrays.fill(open, -1L);
+            } else {
+                slotColumns[slot] = valueColumns.get(column);
+                long[] known = knownColumns.get(column);
+                for (int i = 0; i < words; i++) {
+                    open[i] |= ~known[i];
+                }
+            }
+        }
+        long[][] stack = new long[Math.max(program.maxStack(), 1)][BLOCK_WORDS];
+        for (int from = 0; from < words; from += BLOCK_WORDS) {
+            int blockWords = Math.min(BLOCK_WORDS, words - from);
+            program.evaluateColumns(slotColumns, from, blockWords, stack);
+            System.arraycopy(stack[0], 0, result, from, blockWords);
+        }
+        if (variants.size() % Long.SIZE != 0) {
+            open[words - 1] &= (1L << variants.size()) - 1;
+            result[words - 1] &= (1L << variants.size()) - 1;
+        }
+        for (int word = 0; word < words; word++) {
+            long lanes = open[word];
+            result[word] &= ~lanes;
+            while (lanes != 0L) {
+                int index = word * Long.SIZE + Long.numberOfTrailingZeros(lanes);
+                if (expression.isSatisfiable(variants.get(index))) {
+                    result[word] |= lanes & -lanes;
+                }
+                lanes &= lanes - 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,392 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The variant tree of {@link VariantNode} with equivalent subtrees shared, as a DAG. Below a node
+ * the tree only depends on the remaining symbol groups, the possible completions of the node's
+ * variant, and the conditions with the node's values substituted. The completions are identified
+ * by {@link PossibleVariants#completionId(Variant)}; the conditions are BDDs in one
+ * {@link BddManager} ordered by the symbol order, so equal functions have equal ids. The three
+ * together form the signature under which a node is built once and then reused. Possible
+ * variants that cannot identify completions, such as a {@link MappedVariantStore}, give a tree
+ * without shared nodes. A condition that becomes true on the way is recorded on the edge
+ * where it does and leaves the signature, so subtrees below different decided prefixes can still
+ * be shared.
+ * <p>
+ * Nodes are ints, the root being 0. An edge carries the values its child assigns to the child's
+ * symbol group as bits and the conditionals it decides, so the variants and conditionals of the
+ * leaves are rebuilt along the paths.
+ */
+final class VariantDag<T extends Conditional> {
+    private final Variant rootVariant;
+    private final List<List<String>> symbolOrder;
+    private final List<T> allConditionals;
+    private final int size;
+    private final short[] level;
+    private final int[] edgeStart;
+    private final int[] edgeCount;
+    private final int[] edgeTarget;
+    private final long[] edgeValues;
+    private final int[] edgeConditionalStart;
+    private final int[] edgeConditionalCount;
+    private final int[] rootConditionals;
+    private final boolean[] finalNode;
+    private final int[] conditionalStart;
+    private final int[] conditionalCount;
+    private final int[] conditionalPool;
+
+    private VariantDag(Builder<T> builder) {
+        this.rootVariant = builder.rootVariant;
+        this.symbolOrder = builder.symbolOrder;
+        this.allConditionals = builder.allConditionals;
+        this.size = builder.size;
+        this.level = Arrays.copyOf(builder.level, size);
+        this.edgeStart = Arrays.copyOf(builder.edgeStart, size);
+        this.edgeCount = Arrays.copyOf(builder.edgeCount, size);
+        this.edgeTarget = Arrays.copyOf(builder.edgeTarget, builder.edges);
+        this.edgeValues = Arrays.copyOf(builder.edgeValues, builder.edges);
+        this.edgeConditionalStart = Arrays.copyOf(builder.edgeConditionalStart, builder.edges);
+        this.edgeConditionalCount = Arrays.copyOf(builder.edgeConditionalCount, builder.edges);
+        this.rootConditionals = builder.rootConditionals;
+        this.finalNode = Arrays.copyOf(builder.finalNode, size);
+        this.conditionalStart = Arrays.copyOf(builder.conditionalStart, size);
+        this.conditionalCount = Arrays.copyOf(builder.conditionalCount, size);
+        this.conditionalPool = builder.pool.toArray();
+    }
+
+    /**
+     * Builds the DAG of the tree {@link VariantNode#VariantNode(List, Variant, List, List, List)}
+     * would build.
+     */
+    public static <T extends Conditional> VariantDag<T> build(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            List<Variant> possibleVariants,
+            List<T> allConditionals
+    ) {
+        return build(currentSymbols, variant, symbolOrder, DepthFirstBuilder.index(symbolOrder, possibleVariants), allConditionals);
+    }
+
+    /**
+     * {@link #build(List, Variant, List, List, List)} against possible variants that are already
+     * indexed or stored elsewhere.
+     */
+    public static <T extends Conditional> VariantDag<T> build(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            PossibleVariants possibleVariants,
+            List<T> allConditionals
+    ) {
+        int rootLevel = DepthFirstBuilder.rootLevel(symbolOrder, currentSymbols);
+        Builder<T> builder = new Builder<>(variant, symbolOrder, possibleVariants, allConditionals);
+        builder.build(rootLevel);
+        return new VariantDag<>(builder);
+    }
+
+    /**
+     * Number of distinct nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of edges, which is the number of nodes a tree would have besides its root if nothing
+     * were shared.
+     */
+    public int edgeCount() {
+        return edgeTarget.length;
+    }
+
+    /**
+     * The child nodes of {@code node} from left to right; a shared node may be the child of
+     * several nodes.
+     */
+    public int[] getChildren(int node) {
+        return Arrays.copyOfRange(edgeTarget, edgeStart[node], edgeStart[node] + edgeCount[node]);
+    }
+
+    /**
+     * The symbol group {@code node} assigns, empty for a root without a group.
+     */
+    public List<String> getCurrentSymbols(int node) {
+        return level[node] < 0 ? List.of() : symbolOrder.get(level[node]);
+    }
+
+    /**
+     * The conditionals that hold at the final leaf {@code node} but are not decided on the path to
+     * it, because they involve symbols outside the symbol order.
+     */
+    public List<T> getConditionals(int node) {
+        List<T> conditionals = new ArrayList<>(conditionalCount[node]);
+        for (int i = conditionalStart[node]; i < conditionalStart[node] + conditionalCount[node]; i++) {
+            conditionals.add(allConditionals.get(conditionalPool[i]));
+        }
+        return conditionals;
+    }
+
+    /**
+     * Number of leaves of the tree the DAG represents, counting shared leaves once per path.
+     */
+    public long countLeafPaths() {
+        int levels = symbolOrder.size() + 1;
+        int[] start = new int[levels + 1];
+        for (int node = 0; node < size; node++) {
+            start[level[node] + 2]++;
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        int[] byLevel = new int[size];
+        for (int node = 0; node < size; node++) {
+            byLevel[start[level[node] + 1]++] = node;
+        }
+        long[] paths = new long[size];
+        for (int i = size - 1; i >= 0; i--) {
+            int node = byLevel[i];
+            if (edgeCount[node] == 0) {
+                paths[node] = 1;
+            }
+            for (int edge = edgeStart[node]; edge < edgeStart[node] + edgeCount[node]; edge++) {
+                paths[node] += paths[edgeTarget[edge]];
+            }
+        }
+        return paths[0];
+    }
+
+    /**
+     * Passes the variant and conditionals of every leaf of the represented tree, from left to
+     * right, rebuilding the variants along the paths.
+     */
+    public void forEachLeaf(BiConsumer<Variant, List<T>> action) {
+        Deque<Integer> pendingNodes = new ArrayDeque<>();
+        Deque<Variant> pendingVariants = new ArrayDeque<>();
+        Deque<int[]> pendingDecided = new ArrayDeque<>();
+        pendingNodes.push(0);
+        pendingVariants.push(rootVariant);
+        pendingDecided.push(rootConditionals);
+        while (!pendingNodes.isEmpty()) {
+            int node = pendingNodes.pop();
+            Variant variant = pendingVariants.pop();
+            int[] decided = pendingDecided.pop();
+            if (edgeCount[node] == 0) {
+                List<T> conditionals = new ArrayList<>();
+                if (finalNode[node]) {
+                    int[] holding = Arrays.copyOf(decided, decided.length + conditionalCount[node]);
+                    System.arraycopy(conditionalPool, conditionalStart[node], holding, decided.length, conditionalCount[node]);
+                    Arrays.sort(holding);
+                    for (int conditional : holding) {
+                        conditionals.add(allConditionals.get(conditional));
+                    }
+                }
+                action.accept(variant, conditionals);
+            }
+            for (int edge = edgeStart[node] + edgeCount[node] - 1; edge >= edgeStart[node]; edge--) {
+                int child = edgeTarget[edge];
+                List<String> symbols = symbolOrder.get(level[child]);
+                boolean[] values = new boolean[symbols.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = ((edgeValues[edge] >>> i) & 1L) != 0L;
+                }
+                int[] childDecided = Arrays.copyOf(decided, decided.length + edgeConditionalCount[edge]);
+                System.arraycopy(conditionalPool, edgeConditionalStart[edge], childDecided, decided.length, edgeConditionalCount[edge]);
+                pendingNodes.push(child);
+                pendingVariants.push(variant.deriveVariants(symbols, List.of(values)).get(0));
+                pendingDecided.push(childDecided);
+            }
+        }
+    }
+
+    /**
+     * What the subtree below a node depends on; the conditions compared by content.
+     */
+    private record Signature(int level, int completion, int[] conditions) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Signature other
+                    && level == other.level
+                    && completion == other.completion
+                    && Arrays.equals(conditions, other.conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * level + completion) + Arrays.hashCode(conditions);
+        }
+    }
+
+    /**
+     * A node still to expand, with the residual condition BDDs, decided ones false.
+     */
+    private record Pending(int node, Variant variant, int[] conditions) {
+    }
+
+    private static final class Builder<T extends Conditional> extends DepthFirstBuilder<Pending> {
+        private final Variant rootVariant;
+        private final List<List<String>> symbolOrder;
+        private final PossibleVariants possibleVariants;
+        private final List<T> allConditionals;
+        private final BddManager bdd;
+        private final Map<Signature, Integer> nodes = new HashMap<>();
+        private int size;
+        private short[] level = new short[16];
+        private int[] edgeStart = new int[16];
+        private int[] edgeCount = new int[16];
+        private int[] conditionalStart = new int[16];
+        private int[] conditionalCount = new int[16];
+        private int edges;
+        private int[] edgeTarget = new int[16];
+        private long[] edgeValues = new long[16];
+        private int[] edgeConditionalStart = new int[16];
+        private int[] edgeConditionalCount = new int[16];
+        private int[] rootConditionals;
+        private boolean[] finalNode = new boolean[16];
+        private final ConditionalPool pool = new ConditionalPool();
+
+        private Builder(Variant rootVariant, List<List<String>> symbolOrder, PossibleVariants possibleVariants, List<T> allConditionals) {
+            super(symbolOrder, possibleVariants);
+            this.rootVariant = rootVariant;
+            this.symbolOrder = symbolOrder;
+            this.possibleVariants = possibleVariants;
+            this.allConditionals = allConditionals;
+            this.bdd = new BddManager(symbolOrder.stream().flatMap(List::stream).toList());
+        }
+
+        private void build(int rootLevel) {
+            int[] rootConditions = new int[allConditionals.size()];
+            for (int i = 0; i < rootConditions.length; i++) {
+                rootConditions[i] = bdd.restrict(bdd.fromExpression(allConditionals.get(i).getCondition().getExpression()),
+                        rootVariant.toDict());
+            }
+            this.rootConditionals = decide(rootConditions);
+            build(List.of(new Pending(add(rootLevel), rootVariant, rootConditions)));
+        }
+
+        @Override
+        Variant variant(Pending node) {
+            return node.variant();
+        }
+
+        @Override
+        int level(Pending node) {
+            return level[node.node()];
+        }
+
+        @Override
+        void enter(Pending node) {
+            edgeStart[node.node()] = edges;
+        }
+
+        @Override
+        void leaf(Pending node) {
+            int current = node.node();
+            finalNode[current] = true;
+            conditionalStart[current] = pool.size();
+            for (int i = 0; i < allConditionals.size(); i++) {
+                if (node.conditions()[i] != BddManager.FALSE) {
+                    pool.add(i);
+                }
+            }
+            conditionalCount[current] = pool.size() - conditionalStart[current];
+        }
+
+        /**
+         * Adds the edge to the child and the child itself unless a node with its signature exists,
+         * in which case there is nothing to expand.
+         */
+        @Override
+        Pending child(Pending parent, int group, Variant child) {
+            List<String> symbols = symbolOrder.get(group);
+            Map<String, Boolean> values = new HashMap<>();
+            long bits = 0L;
+            for (int i = 0; i < symbols.size(); i++) {
+                Boolean value = child.getValue(SymbolTable.global().intern(symbols.get(i)));
+                values.put(symbols.get(i), value);
+                if (Boolean.TRUE.equals(value)) {
+                    bits |= 1L << i;
+                }
+            }
+            int[] childConditions = parent.conditions().clone();
+            for (int i = 0; i < childConditions.length; i++) {
+                if (childConditions[i] != BddManager.FALSE) {
+                    childConditions[i] = bdd.restrict(childConditions[i], values);
+                }
+            }
+            int[] decided = decide(childConditions);
+            int completion = possibleVariants.completionId(child);
+            Signature signature = new Signature(group, completion, childConditions);
+            Integer target = completion < 0 ? null : nodes.get(signature);
+            Pending expand = null;
+            if (target == null) {
+                target = add(group);
+                if (completion >= 0) {
+                    nodes.put(signature, target);
+                }
+                expand = new Pending(target, child, childConditions);
+            }
+            addEdge(target, bits, decided);
+            return expand;
+        }
+
+        @Override
+        void childrenCreated(Pending node) {
+            edgeCount[node.node()] = edges - edgeStart[node.node()];
+        }
+
+        /**
+         * Marks the conditions that are true in {@code conditions} as decided, which is the false
+         * BDD, and returns their indices.
+         */
+        private static int[] decide(int[] conditions) {
+            int count = 0;
+            int[] decided = new int[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                if (conditions[i] == BddManager.TRUE) {
+                    conditions[i] = BddManager.FALSE;
+                    decided[count++] = i;
+                }
+            }
+            return Arrays.copyOf(decided, count);
+        }
+
+        private int add(int nodeLevel) {
+            if (size == level.length) {
+                int capacity = grow(size);
+                level = Arrays.copyOf(level, capacity);
+                edgeStart = Arrays.copyOf(edgeStart, capacity);
+                edgeCount = Arrays.copyOf(edgeCount, capacity);
+                conditionalStart = Arrays.copyOf(conditionalStart, capacity);
+                conditionalCount = Arrays.copyOf(conditionalCount, capacity);
+                finalNode = Arrays.copyOf(finalNode, capacity);
+            }
+            level[size] = (short) nodeLevel;
+            return size++;
+        }
+
+        private void addEdge(int target, long bits, int[] decided) {
+            if (edges == edgeTarget.length) {
+                edgeTarget = Arrays.copyOf(edgeTarget, grow(edges));
+                edgeValues = Arrays.copyOf(edgeValues, edgeTarget.length);
+                edgeConditionalStart = Arrays.copyOf(edgeConditionalStart, edgeTarget.length);
+                edgeConditionalCount = Arrays.copyOf(edgeConditionalCount, edgeTarget.length);
+            }
+            edgeTarget[edges] = target;
+            edgeValues[edges] = bits;
+            edgeConditionalStart[edges] = pool.size();
+            edgeConditionalCount[edges++] = decided.length;
+            for (int conditional : decided) {
+                pool.add(conditional);
+            }
+        }
+    }
+}
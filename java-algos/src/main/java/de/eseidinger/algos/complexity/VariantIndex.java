@@ -0,0 +1,205 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix trie over a list of possible variants that answers {@link Variant#isPossible(List)}
+ * without scanning the list. Level {@code i} of the trie branches on the value of the {@code i}-th
+ * symbol of the index order into false, true and unassigned; the order starts with the given
+ * symbols, usually the flattened symbol order of a variant tree, followed by any other symbol the
+ * possible variants contain.
+ * <p>
+ * A query follows the one edge its assigned value selects per level and stops after the last level
+ * it assigns, since every trie node leads to at least one possible variant. For variants that
+ * assign a prefix of the order, which is what a variant tree derives, a query therefore takes time
+ * proportional to the number of assigned symbols. Unassigned levels in between branch into all
+ * children, with nodes that failed remembered for the rest of the query. The index is immutable
+ * and can be queried concurrently.
+ * <p>
+ * Trie nodes whose subtries are equal are numbered alike, which gives the
+ * {@link #completionId(Variant) completion ids} of prefix variants.
+ */
+public final class VariantIndex implements PossibleVariants {
+    private static final int OPEN = 2;
+
+    private final int[] order;
+    private final int[] levelOf;
+    private final boolean empty;
+    private int[] children = new int[3 * 16];
+    private int size;
+    private final int[] completions;
+
+    public VariantIndex(List<String> symbolOrder, List<Variant> possibleVariants) {
+        int[] levels = new int[0];
+        int[] symbols = new int[symbolOrder.size()];
+        int count = 0;
+        for (String symbol : symbolOrder) {
+            int id = SymbolTable.global().intern(symbol);
+            levels = ensureLevel(levels, id);
+            if (levels[id] < 0) {
+                levels[id] = count;
+                symbols[count++] = id;
+            }
+        }
+        for (Variant variant : possibleVariants) {
+            for (int id : variant.symbolIds()) {
+                levels = ensureLevel(levels, id);
+                if (levels[id] < 0) {
+                    if (count == symbols.length) {
+                        symbols = Arrays.copyOf(symbols, Math.max(4, 2 * count));
+                    }
+                    levels[id] = count;
+                    symbols[count++] = id;
+                }
+            }
+        }
+        this.order = Arrays.copyOf(symbols, count);
+        this.levelOf = levels;
+        this.empty = possibleVariants.isEmpty();
+        Arrays.fill(children, -1);
+        size = 1;
+        for (Variant variant : possibleVariants) {
+            insert(variant);
+        }
+        this.completions = numberSubtries();
+    }
+
+    /**
+     * Numbers the nodes so that two nodes get the same number iff their subtries are equal.
+     * Children are created after their parents, so a backwards pass sees them first.
+     */
+    private int[] numberSubtries() {
+        int[] numbers = new int[size];
+        Map<List<Integer>, Integer> classes = new HashMap<>();
+        for (int node = size - 1; node >= 0; node--) {
+            List<Integer> key = new ArrayList<>(3);
+            for (int edge = 3 * node; edge < 3 * node + 3; edge++) {
+                key.add(children[edge] < 0 ? -1 : numbers[children[edge]]);
+            }
+            numbers[node] = classes.computeIfAbsent(key, k -> classes.size());
+        }
+        return numbers;
+    }
+
+    private static int[] ensureLevel(int[] levels, int id) {
+        if (id < levels.length) {
+            return levels;
+        }
+        int length = levels.length;
+        int[] grown = Arrays.copyOf(levels, Math.max(id + 1, 2 * length));
+        Arrays.fill(grown, length, grown.length, -1);
+        return grown;
+    }
+
+    private void insert(Variant variant) {
+        int node = 0;
+        for (int id : order) {
+            Boolean value = variant.getValue(id);
+            int edge = 3 * node + (value == null ? OPEN : value ? 1 : 0);
+            if (children[edge] < 0) {
+                if (3 * (size + 1) > children.length) {
+                    int length = children.length;
+                    children = Arrays.copyOf(children, 2 * length);
+                    Arrays.fill(children, length, children.length, -1);
+                }
+                children[edge] = size++;
+            }
+            node = children[edge];
+        }
+    }
+
+    /**
+     * Number of trie nodes, including the root.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of the subtrie below the trie node a variant that assigns the first levels of
+     * the index order reaches; -1 for other variants and impossible ones.
+     */
+    @Override
+    public int completionId(Variant variant) {
+        long levels = assignedLevels(variant);
+        if (empty || levels < 0 || (int) (levels >>> 32) != (int) levels) {
+            return -1;
+        }
+        int node = prefixNode(variant, (int) levels);
+        return node < 0 ? -1 : completions[node];
+    }
+
+    @Override
+    public boolean isPossible(Variant variant) {
+        long levels = assignedLevels(variant);
+        if (empty || levels < 0) {
+            return false;
+        }
+        int assignedCount = (int) (levels >>> 32);
+        int lastLevel = (int) levels - 1;
+        if (assignedCount == lastLevel + 1) {
+            return prefixNode(variant, assignedCount) >= 0;
+        }
+        return matches(0, 0, lastLevel, variant, new boolean[size]);
+    }
+
+    /**
+     * The number of symbols {@code variant} assigns in the upper half and one more than the level
+     * of the last of them in the lower half; negative if it assigns a symbol outside the index.
+     */
+    private long assignedLevels(Variant variant) {
+        int lastLevel = -1;
+        int assignedCount = 0;
+        for (int id : variant.symbolIds()) {
+            if (variant.getValue(id) == null) {
+                continue;
+            }
+            int level = id < levelOf.length ? levelOf[id] : -1;
+            if (level < 0) {
+                return -1L;
+            }
+            lastLevel = Math.max(lastLevel, level);
+            assignedCount++;
+        }
+        return ((long) assignedCount << 32) | (lastLevel + 1);
+    }
+
+    /**
+     * Follows the values of the first {@code levels} levels, which {@code variant} all assigns;
+     * -1 if no possible variant has them.
+     */
+    private int prefixNode(Variant variant, int levels) {
+        int node = 0;
+        for (int level = 0; level < levels && node >= 0; level++) {
+            node = children[3 * node + (variant.getValue(order[level]) ? 1 : 0)];
+        }
+        return node;
+    }
+
+    private boolean matches(int node, int level, int lastLevel, Variant variant, boolean[] failed) {
+        if (level > lastLevel) {
+            return true;
+        }
+        if (failed[node]) {
+            return false;
+        }
+        Boolean value = variant.getValue(order[level]);
+        boolean found = false;
+        if (value != null) {
+            int child = children[3 * node + (value ? 1 : 0)];
+            found = child >= 0 && matches(child, level + 1, lastLevel, variant, failed);
+        } else {
+            for (int edge = 3 * node; edge < 3 * node + 3 && !found; edge++) {
+                found = children[edge] >= 0 && matches(children[edge], level + 1, lastLevel, variant, failed);
+            }
+        }
+        if (!found) {
+            failed[node] = true;
+        }
+        return found;
+    }
+}
@@ -1,16 +1,25 @@
 package de.eseidinger.algos.complexity;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 class VariantNode<T extends Conditional> {
     private final List<String> currentSymbols;
     private final Variant variant;
-    private final List<VariantNode<T>> children;
+    private List<VariantNode<T>> children;
+    private SoftReference<List<VariantNode<T>>> softChildren;
+    private TreeContext<T> context;
     private VariantNode<T> parent;
     private final List<T> conditionals;
     private final Map<String, Object> nodeProps;
@@ -22,23 +31,109 @@ class VariantNode<T extends Conditional> {
             List<Variant> possibleVariants,
             List<T> allConditionals
     ) {
+        this(currentSymbols, variant, symbolOrder,
+                DepthFirstBuilder.index(symbolOrder, possibleVariants), allConditionals);
+    }
+
+    /**
+     * Builds the tree against possible variants that are already indexed or stored elsewhere, such
+     * as a {@link MappedVariantStore}.
+     */
+    public VariantNode(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            PossibleVariants possibleVariants,
+            List<T> allConditionals
+    ) {
+        this(currentSymbols, variant, new TreeContext<>(symbolOrder, possibleVariants, allConditionals, Mode.SEQUENTIAL));
+    }
+
+    private VariantNode(List<String> currentSymbols, Variant variant, TreeContext<T> context) {
+        this(currentSymbols, variant);
+        context.builder.build(List.of(this));
+    }
+
+    private VariantNode(List<String> currentSymbols, Variant variant) {
         this.currentSymbols = currentSymbols;
         this.variant = variant;
         this.children = new ArrayList<>();
         this.parent = null;
         this.conditionals = new ArrayList<>();
         this.nodeProps = new HashMap<>();
+    }
 
-        List<String> flatSymbols = symbolOrder.stream().flatMap(List::stream).toList();
-        if (variant.isFinal(flatSymbols)) {
-            for (T conditional : allConditionals) {
-                if (conditional.getCondition().check(variant)) {
-                    this.conditionals.add(conditional);
-                }
-            }
-        } else {
-            createChildNodes(symbolOrder, allConditionals, possibleVariants);
+    /**
+     * Builds the same tree as {@link #VariantNode(List, Variant, List, List, List)} in
+     * {@code pool}. The subtrees of the nodes above depth {@code sequentialDepth} are fork-join
+     * tasks; deeper subtrees are built sequentially by the task that reaches them.
+     */
+    public static <T extends Conditional> VariantNode<T> buildParallel(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            List<Variant> possibleVariants,
+            List<T> allConditionals,
+            ForkJoinPool pool,
+            int sequentialDepth
+    ) {
+        return buildParallel(currentSymbols, variant, symbolOrder, DepthFirstBuilder.index(symbolOrder, possibleVariants),
+                allConditionals, pool, sequentialDepth);
+    }
+
+    /**
+     * {@link #buildParallel(List, Variant, List, List, List, ForkJoinPool, int)} against possible
+     * variants that are already indexed or stored elsewhere.
+     */
+    public static <T extends Conditional> VariantNode<T> buildParallel(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            PossibleVariants possibleVariants,
+            List<T> allConditionals,
+            ForkJoinPool pool,
+            int sequentialDepth
+    ) {
+        if (sequentialDepth < 0) {
+            throw new IllegalArgumentException("Sequential depth must not be negative: " + sequentialDepth);
         }
+        TreeContext<T> context = new TreeContext<>(symbolOrder, possibleVariants, allConditionals, Mode.PARALLEL);
+        return pool.invoke(new BuildTask<>(currentSymbols, variant, context, 0, sequentialDepth));
+    }
+
+    /**
+     * A tree whose nodes derive their children only when {@link #getChildren()} is first called on
+     * them. With {@code softChildren} the expanded children of a node are held through a
+     * {@link SoftReference}, so the garbage collector may drop them under memory pressure; they
+     * are derived again, without their node properties, when asked for. Expansion is synchronized
+     * per tree.
+     */
+    public static <T extends Conditional> VariantNode<T> buildLazy(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            List<Variant> possibleVariants,
+            List<T> allConditionals,
+            boolean softChildren
+    ) {
+        return buildLazy(currentSymbols, variant, symbolOrder, DepthFirstBuilder.index(symbolOrder, possibleVariants),
+                allConditionals, softChildren);
+    }
+
+    /**
+     * {@link #buildLazy(List, Variant, List, List, List, boolean)} against possible variants that
+     * are already indexed or stored elsewhere.
+     */
+    public static <T extends Conditional> VariantNode<T> buildLazy(
+            List<String> currentSymbols,
+            Variant variant,
+            List<List<String>> symbolOrder,
+            PossibleVariants possibleVariants,
+            List<T> allConditionals,
+            boolean softChildren
+    ) {
+        Mode mode = softChildren ? Mode.LAZY_SOFT : Mode.LAZY;
+        return new VariantNode<>(currentSymbols, variant, new TreeContext<>(symbolOrder, possibleVariants, allConditionals, mode));
     }
 
     public static Variant createRootVariant(List<List<String>> symbolOrder) {
@@ -57,8 +152,38 @@ class VariantNode<T extends Conditional> {
         return result;
     }
 
+    /**
+     * The children of the node, derived on the first call for nodes of a lazy tree.
+     */
     public List<VariantNode<T>> getChildren() {
-        return children;
+        if (context == null) {
+            return children;
+        }
+        synchronized (context) {
+            List<VariantNode<T>> expanded = children != null ? children : softChildren == null ? null : softChildren.get();
+            if (expanded == null) {
+                children = new ArrayList<>();
+                context.builder.build(context.builder.children(this));
+                expanded = children;
+                if (context.mode == Mode.LAZY_SOFT) {
+                    softChildren = new SoftReference<>(expanded);
+                    children = null;
+                }
+            }
+            return expanded;
+        }
+    }
+
+    /**
+     * Whether the children of the node are currently built; always the case outside lazy trees.
+     */
+    public boolean isExpanded() {
+        if (context == null) {
+            return true;
+        }
+        synchronized (context) {
+            return children != null || softChildren != null && softChildren.get() != null;
+        }
     }
 
     public VariantNode<T> getParent() {
@@ -73,29 +198,6 @@ class VariantNode<T extends Conditional> {
         return nodeProps;
     }
 
-    private void createChildNodes(
-            List<List<String>> symbolOrder,
-            List<T> allConditionals,
-            List<Variant> possibleVariants
-    ) {
-        List<String> nextSymbols = getNextSymbols(symbolOrder);
-        if (nextSymbols.isEmpty()) return;
-
-        int nofVariants = 1 << nextSymbols.size();
-        List<boolean[]> boolValues = new ArrayList<>();
-        for (int i = 0; i < nofVariants; i++) {
-            boolValues.add(boolFromInteger(i, nextSymbols.size()));
-        }
-
-        List<Variant> variants = variant.deriveVariants(nextSymbols, boolValues);
-        for (Variant variant : variants) {
-            if (variant.isPossible(possibleVariants)) {
-                VariantNode<T> child = new VariantNode<>(nextSymbols, variant, symbolOrder, possibleVariants, allConditionals);
-                addChild(child);
-            }
-        }
-    }
-
     private List<String> getNextSymbols(List<List<String>> symbolOrder) {
         if (currentSymbols.isEmpty()) {
             return symbolOrder.get(0);
@@ -109,21 +211,231 @@ class VariantNode<T extends Conditional> {
         child.parent = this;
     }
 
+    /**
+     * The leaves below the node from left to right, expanding all of a lazy tree.
+     */
     public List<VariantNode<T>> getLeafNodes() {
-        if (children.isEmpty()) {
-            return List.of(this);
-        }
         List<VariantNode<T>> leafNodes = new ArrayList<>();
-        for (VariantNode<T> child : children) {
-            leafNodes.addAll(child.getLeafNodes());
-        }
+        leafIterator().forEachRemaining(leafNodes::add);
         return leafNodes;
     }
 
+    /**
+     * Iterates the node and all nodes below it in pre-order, expanding nodes of a lazy tree as it
+     * reaches them.
+     */
+    public Iterator<VariantNode<T>> nodeIterator() {
+        Deque<VariantNode<T>> pending = new ArrayDeque<>();
+        pending.push(this);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public VariantNode<T> next() {
+                if (pending.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                VariantNode<T> node = pending.pop();
+                List<VariantNode<T>> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Iterates the leaves below the node from left to right.
+     */
+    public Iterator<VariantNode<T>> leafIterator() {
+        Iterator<VariantNode<T>> nodes = nodeIterator();
+        return new Iterator<>() {
+            private VariantNode<T> nextLeaf = advance();
+
+            private VariantNode<T> advance() {
+                while (nodes.hasNext()) {
+                    VariantNode<T> node = nodes.next();
+                    if (node.getChildren().isEmpty()) {
+                        return node;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextLeaf != null;
+            }
+
+            @Override
+            public VariantNode<T> next() {
+                if (nextLeaf == null) {
+                    throw new NoSuchElementException();
+                }
+                VariantNode<T> leaf = nextLeaf;
+                nextLeaf = advance();
+                return leaf;
+            }
+        };
+    }
+
+    /**
+     * Visits the node and all nodes below it in pre-order.
+     */
+    public void accept(Visitor<T> visitor) {
+        Deque<VariantNode<T>> pending = new ArrayDeque<>();
+        Deque<int[]> positions = new ArrayDeque<>();
+        pending.push(this);
+        positions.push(new int[] { 0, 1 });
+        while (!pending.isEmpty()) {
+            VariantNode<T> node = pending.pop();
+            int[] position = positions.pop();
+            visitor.visit(node, position[0], position[1] != 0);
+            List<VariantNode<T>> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(children.get(i));
+                positions.push(new int[] { position[0] + 1, i == children.size() - 1 ? 1 : 0 });
+            }
+        }
+    }
+
+    /**
+     * Callback of {@link #accept(Visitor)}.
+     */
+    @FunctionalInterface
+    public interface Visitor<T extends Conditional> {
+        /**
+         * Called for {@code node} at {@code depth} below the node the walk started at;
+         * {@code lastChild} tells whether it is the last child of its parent, which the start
+         * node counts as.
+         */
+        void visit(VariantNode<T> node, int depth, boolean lastChild);
+    }
+
     @Override
     public String toString() {
         String conditionalStr = conditionals.stream().map(Object::toString).collect(Collectors.joining(", "));
         String symbolStrings = String.join(", ", currentSymbols);
         return "[" + symbolStrings + "] -> " + variant + " -> [" + conditionalStr + "]";
     }
+
+    /**
+     * Builds the subtree of one node; the child subtrees run as tasks of their own until
+     * {@code sequentialDepth} is reached. Children are added in derivation order, so the tree is
+     * the sequential one. Every task that evaluates leaves does so with its own copy of the tree's
+     * evaluator, which is garbage once the task is done.
+     */
+    @SuppressWarnings("serial")
+    private static final class BuildTask<T extends Conditional> extends RecursiveTask<VariantNode<T>> {
+        private final List<String> currentSymbols;
+        private final Variant variant;
+        private final TreeContext<T> context;
+        private final int depth;
+        private final int sequentialDepth;
+
+        private BuildTask(List<String> currentSymbols, Variant variant, TreeContext<T> context, int depth, int sequentialDepth) {
+            this.currentSymbols = currentSymbols;
+            this.variant = variant;
+            this.context = context;
+            this.depth = depth;
+            this.sequentialDepth = sequentialDepth;
+        }
+
+        @Override
+        protected VariantNode<T> compute() {
+            VariantNode<T> node = new VariantNode<>(currentSymbols, variant);
+            if (depth >= sequentialDepth || variant.isFinal(context.flatSymbolIds)) {
+                new Builder<>(context, context.evaluator.copy()).build(List.of(node));
+                return node;
+            }
+            List<String> nextSymbols = node.getNextSymbols(context.symbolOrder);
+            List<BuildTask<T>> tasks = variant.streamDerivedVariants(nextSymbols, context.possibleVariants)
+                    .map(derived -> new BuildTask<>(nextSymbols, derived, context, depth + 1, sequentialDepth))
+                    .toList();
+            invokeAll(tasks);
+            for (BuildTask<T> task : tasks) {
+                node.addChild(task.join());
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Builds the nodes of one tree with leaves evaluated by {@code evaluator}; the nodes of a lazy
+     * tree keep the context instead of their children.
+     */
+    private static final class Builder<T extends Conditional> extends DepthFirstBuilder<VariantNode<T>> {
+        private final TreeContext<T> context;
+        private final LeafEvaluator<T> evaluator;
+
+        private Builder(TreeContext<T> context, LeafEvaluator<T> evaluator) {
+            super(context.symbolOrder, context.possibleVariants);
+            this.context = context;
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        Variant variant(VariantNode<T> node) {
+            return node.variant;
+        }
+
+        @Override
+        int level(VariantNode<T> node) {
+            return node.currentSymbols.isEmpty() ? -1 : context.symbolOrder.indexOf(node.currentSymbols);
+        }
+
+        @Override
+        void leaf(VariantNode<T> node) {
+            evaluator.evaluate(node.variant, i -> node.conditionals.add(context.allConditionals.get(i)));
+        }
+
+        @Override
+        boolean expand(VariantNode<T> node) {
+            if (context.mode == Mode.LAZY || context.mode == Mode.LAZY_SOFT) {
+                node.children = null;
+                node.context = context;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        VariantNode<T> child(VariantNode<T> parent, int group, Variant variant) {
+            VariantNode<T> child = new VariantNode<>(context.symbolOrder.get(group), variant);
+            parent.addChild(child);
+            return child;
+        }
+    }
+
+    private enum Mode { SEQUENTIAL, PARALLEL, LAZY, LAZY_SOFT }
+
+    /**
+     * State shared by all nodes of one tree while it is built: the conditions are merged into one
+     * leaf evaluator once, at the root. The tasks of a parallel build copy that evaluator into
+     * builders of their own; the nodes of a lazy tree keep the context to expand later.
+     */
+    private static final class TreeContext<T extends Conditional> {
+        private final Mode mode;
+        private final List<List<String>> symbolOrder;
+        private final List<T> allConditionals;
+        private final PossibleVariants possibleVariants;
+        private final LeafEvaluator<T> evaluator;
+        private final Builder<T> builder;
+        private final long[] flatSymbolIds;
+
+        private TreeContext(List<List<String>> symbolOrder, PossibleVariants possibleVariants, List<T> allConditionals, Mode mode) {
+            List<String> flatSymbols = symbolOrder.stream().flatMap(List::stream).toList();
+            this.mode = mode;
+            this.symbolOrder = symbolOrder;
+            this.allConditionals = allConditionals;
+            this.possibleVariants = possibleVariants;
+            this.evaluator = new LeafEvaluator<>(allConditionals);
+            this.builder = new Builder<>(this, evaluator);
+            this.flatSymbolIds = Variant.symbolIdMask(flatSymbols);
+        }
+    }
 }
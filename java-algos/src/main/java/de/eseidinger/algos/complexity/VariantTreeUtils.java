@@ -14,22 +14,19 @@ class VariantTreeUtils {
         String emptyStr = " ".repeat(markerStr.length());
         String connectionStr = "|" + emptyStr.substring(1);
 
-        int levelMarkersLimit = levelMarkers.size();
-        if (levelMarkersLimit > 0) {
-            levelMarkersLimit = levelMarkersLimit - 1;
-        }
-        String markers = levelMarkers.stream()
-                .limit(levelMarkersLimit)
-                .map(draw -> draw ? connectionStr : emptyStr)
-                .collect(Collectors.joining(""));
-        String lastMarker = levelMarkers.isEmpty() ? "" : markerStr;
-        System.out.println(markers + lastMarker + strFunc.apply(node));
-
-        for (int i = 0; i < node.getChildren().size(); i++) {
-            boolean isLast = i == node.getChildren().size() - 1;
-            printTree(node.getChildren().get(i), markerStr, new ArrayList<>(levelMarkers) {{
-                add(!isLast);
-            }}, strFunc);
-        }
+        List<Boolean> markers = new ArrayList<>(levelMarkers);
+        int baseDepth = levelMarkers.size();
+        node.accept((current, depth, lastChild) -> {
+            if (depth > 0) {
+                markers.subList(baseDepth + depth - 1, markers.size()).clear();
+                markers.add(!lastChild);
+            }
+            String prefix = markers.stream()
+                    .limit(Math.max(markers.size() - 1, 0))
+                    .map(draw -> draw ? connectionStr : emptyStr)
+                    .collect(Collectors.joining(""));
+            String lastMarker = markers.isEmpty() ? "" : markerStr;
+            System.out.println(prefix + lastMarker + strFunc.apply(current));
+        });
     }
 }
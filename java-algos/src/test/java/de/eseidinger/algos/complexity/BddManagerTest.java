@@ -0,0 +1,82 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BddManagerTest {
+
+    @Test
+    void shouldRepresentEqualFunctionsByTheSameNode() {
+        BddManager bdd = new BddManager();
+        int a = bdd.variable("A");
+        int b = bdd.variable("B");
+        assertEquals(bdd.and(a, b), bdd.fromExpression(new BooleanExpression("B & A")));
+        assertEquals(bdd.not(bdd.or(a, b)), bdd.fromExpression(new BooleanExpression("!A & !B")));
+        assertEquals(BddManager.TRUE, bdd.or(a, bdd.not(a)));
+        assertEquals(4, bdd.nodeCount(bdd.and(a, b)));
+    }
+
+    @Test
+    void shouldRestrictAndQuantify() {
+        BddManager bdd = new BddManager();
+        int f = bdd.fromExpression(new BooleanExpression("(A & B) | (!A & C)"));
+        assertEquals(bdd.variable("B"), bdd.restrict(f, Map.of("A", true)));
+        assertEquals(bdd.variable("C"), bdd.restrict(f, Map.of("A", false)));
+        assertEquals(bdd.or(bdd.variable("B"), bdd.variable("C")), bdd.exists(f, List.of("A")));
+        assertEquals(BddManager.TRUE, bdd.exists(f, List.of("A", "B")));
+        assertEquals(List.of("A", "B", "C"), bdd.support(f));
+    }
+
+    @Test
+    void shouldEvaluateAlongOnePath() {
+        BddManager bdd = new BddManager();
+        int f = bdd.fromExpression(new BooleanExpression("(A & B) | (!A & C)"));
+        assertTrue(bdd.evaluate(f, Map.of("A", false, "C", true)));
+        assertFalse(bdd.evaluate(f, Map.of("A", true, "B", false)));
+        assertThrows(IllegalArgumentException.class, () -> bdd.evaluate(f, Map.of("A", true)));
+    }
+
+    @Test
+    void shouldMatchExpressionTruthTables() {
+        List<String> identifiers = List.of("V0", "V1", "V2", "V3", "V4", "V5", "V6", "V7");
+        BddManager bdd = new BddManager(identifiers);
+        Random random = new Random(3);
+        for (int round = 0; round < 100; round++) {
+            BooleanExpression expression = new BooleanExpression(TestFixtures.randomExpression(random, identifiers, 6));
+            int f = bdd.fromExpression(expression);
+            long[] bitmap = expression.getMintermBitmap(identifiers);
+            for (int minterm = 0; minterm < 1 << identifiers.size(); minterm++) {
+                Map<String, Boolean> assignment = new HashMap<>();
+                for (int i = 0; i < identifiers.size(); i++) {
+                    assignment.put(identifiers.get(i), ((minterm >>> (identifiers.size() - 1 - i)) & 1) != 0);
+                }
+                assertEquals(((bitmap[minterm >>> 6] >>> minterm) & 1L) != 0L, bdd.evaluate(f, assignment));
+            }
+        }
+    }
+
+    @Test
+    void shouldStayLinearForDisjunctionOfPairs() {
+        List<String> order = new ArrayList<>();
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            order.add("A" + i);
+            order.add("B" + i);
+            expression.append(i == 0 ? "" : " | ").append("(A").append(i).append(" & B").append(i).append(")");
+        }
+        BddManager bdd = new BddManager(order);
+        int f = bdd.fromExpression(new BooleanExpression(expression.toString()));
+        assertEquals(2 * 60 + 2, bdd.nodeCount(f));
+        assertEquals(BddManager.TRUE, bdd.exists(f, order.subList(0, 2)));
+    }
+}
@@ -1,6 +1,7 @@
 package de.eseidinger.algos.complexity;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.List;
@@ -103,4 +104,33 @@ public class BooleanExpressionParserTest {
         BooleanExpressionParser parser = new BooleanExpressionParser("(A & B");
         assertThrows(IllegalArgumentException.class, parser::parse);
     }
+
+    @Test
+    void shouldInternIdentifiersIntoSharedSymbolTable() {
+        SymbolTable symbols = new SymbolTable();
+        AstNode first = new BooleanExpressionParser("Foo_1 & bar", symbols).parse();
+        AstNode second = new BooleanExpressionParser("bar|Foo_1", symbols).parse();
+        assertEquals(2, symbols.size());
+        assertEquals(first.left.symbol, second.right.symbol);
+        assertEquals(first.right.symbol, second.left.symbol);
+        assertSame(first.left.value, second.right.value);
+        assertEquals("Foo_1", symbols.name(first.left.symbol));
+        assertEquals(-1, symbols.find("baz"));
+    }
+
+    @Test
+    void shouldRejectIdentifiersStartingWithDigit() {
+        BooleanExpressionParser parser = new BooleanExpressionParser("A & 1B");
+        assertThrows(IllegalArgumentException.class, parser::parse);
+    }
+
+    @Test
+    void shouldParseConstants() {
+        BooleanExpressionParser parser = new BooleanExpressionParser("1 & !0");
+        AstNode ast = parser.parse();
+        assertEquals(AstNode.Type.TRUE, ast.left.type);
+        assertEquals(AstNode.Type.FALSE, ast.right.operand.type);
+        assertEquals(new Token(Token.Type.FALSE, "0"), parser.getTokens().get(3));
+        assertThrows(IllegalArgumentException.class, () -> new BooleanExpressionParser("A & 10").parse());
+    }
 }
@@ -1,12 +1,21 @@
 package de.eseidinger.algos.complexity;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
@@ -62,4 +71,472 @@ public class BooleanExpressionTest {
         assertTrue(expr.evaluate(contextTrue));
         assertFalse(expr.evaluate(contextFalse));
     }
+
+    @Test
+    void shouldEvaluateAgainstBitmask() {
+        BooleanExpression expr = new BooleanExpression("(A | B) & !C");
+        assertEquals(List.of("A", "B", "C"), expr.getSymbolSlots());
+        assertTrue(expr.evaluate(0b001L));
+        assertTrue(expr.evaluate(0b010L));
+        assertFalse(expr.evaluate(0b101L));
+        assertFalse(expr.evaluate(0b000L));
+        assertTrue(expr.evaluate(new long[] { 0b011L }));
+    }
+
+    @Test
+    void shouldShortCircuitUndefinedIdentifiers() {
+        BooleanExpression expr = new BooleanExpression("A | B");
+        assertTrue(expr.evaluate(Map.of("A", true)));
+        assertThrows(IllegalArgumentException.class, () -> expr.evaluate(Map.of("A", false)));
+    }
+
+    @Test
+    void shouldEvaluateDeeplyNestedExpression() {
+        int depth = 100;
+        StringBuilder source = new StringBuilder();
+        Map<String, Boolean> context = new HashMap<>();
+        for (int i = 0; i < depth; i++) {
+            source.append(i == 0 ? "" : " & (").append("A").append(i);
+            context.put("A" + i, true);
+        }
+        source.append(")".repeat(depth - 1));
+        BooleanExpression expr = new BooleanExpression(source.toString());
+        long[] values = { -1L, -1L };
+        assertTrue(expr.evaluate(values));
+        assertTrue(expr.evaluate(context));
+        values[1] &= ~(1L << 35);
+        assertFalse(expr.evaluate(values));
+        context.put("A99", false);
+        assertFalse(expr.evaluate(context));
+    }
+
+    @Test
+    void shouldReturnMintermBitmap() {
+        BooleanExpression expr = new BooleanExpression("(A | B) & C");
+        assertArrayEquals(new long[] { 0b10101000L }, expr.getMintermBitmap(List.of("A", "B", "C")));
+        assertArrayEquals(new long[] { 0b11100000L }, expr.getMintermBitmap(List.of("C", "A", "B")));
+    }
+
+    @Test
+    void shouldEnumerateWideTruthTable() {
+        List<String> identifiers = new ArrayList<>();
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            identifiers.add("A" + i);
+            identifiers.add("B" + i);
+            source.append(i == 0 ? "" : " & ").append("(A").append(i).append(" | B").append(i).append(")");
+        }
+        BooleanExpression expr = new BooleanExpression(source.toString());
+        long[] bitmap = expr.getMintermBitmap(identifiers);
+        assertEquals(1 << 18, bitmap.length);
+        long count = 0;
+        for (long word : bitmap) {
+            count += Long.bitCount(word);
+        }
+        assertEquals(531441L, count); // 3^12
+    }
+
+    @Test
+    void shouldGenerateHiddenClassAboveCompileThreshold() {
+        int previousThreshold = BooleanExpression.getCompileThreshold();
+        BooleanExpression.setCompileThreshold(2);
+        try {
+            BooleanExpression expr = new BooleanExpression("(A | !B) & (C | D & !A)");
+            CompiledExpression interpreter = CompiledExpression.compile(new BooleanExpressionParser("(A | !B) & (C | D & !A)").parse());
+            assertFalse(expr.predicate().getClass().isHidden());
+            expr.evaluate(0L);
+            expr.evaluate(0L);
+            assertTrue(expr.predicate().getClass().isHidden());
+            for (long values = 0; values < 16; values++) {
+                assertEquals(interpreter.evaluate(values), expr.evaluate(values));
+                assertEquals(interpreter.evaluate(values), expr.evaluate(new long[] { values }));
+            }
+        } finally {
+            BooleanExpression.setCompileThreshold(previousThreshold);
+        }
+    }
+
+    @Test
+    void shouldCheckCompleteVariantsWithGeneratedPredicate() {
+        int previousThreshold = BooleanExpression.getCompileThreshold();
+        BooleanExpression.setCompileThreshold(2);
+        try {
+            BooleanExpression expr = new BooleanExpression("(A | !B) & C");
+            Condition condition = new Condition(expr);
+            Variant partial = new Variant(List.of(new Attribute("A", true), new Attribute("B", null), new Attribute("C", true)));
+            Variant complete = new Variant(List.of(new Attribute("A", false), new Attribute("B", false), new Attribute("C", true)));
+            for (int i = 0; i < 3; i++) {
+                assertTrue(condition.check(partial));
+            }
+            assertFalse(expr.predicate().getClass().isHidden());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(condition.check(complete));
+            }
+            assertTrue(expr.predicate().getClass().isHidden());
+            assertFalse(condition.check(complete.deriveVariant("B", true)));
+        } finally {
+            BooleanExpression.setCompileThreshold(previousThreshold);
+        }
+    }
+
+    @Test
+    void shouldReorderOperandsFromProfile() {
+        boolean previousProfiling = BooleanExpression.isProfiling();
+        BooleanExpression.setProfiling(true);
+        try {
+            BooleanExpression expr = new BooleanExpression("(A | !B) & (C & !D)");
+            CompiledExpression interpreter = CompiledExpression.compile(expr.getAst());
+            Map<String, Boolean> context = Map.of("A", true, "B", true, "C", true, "D", true);
+            for (int i = 0; i < BooleanExpression.REORDER_INTERVAL; i++) {
+                assertFalse(expr.evaluate(context));
+            }
+
+            ExpressionProfile profile = expr.getProfile();
+            assertEquals(BooleanExpression.REORDER_INTERVAL, profile.getEvaluations());
+            ExpressionProfile.Branch root = profile.getBranches().get(0);
+            assertEquals("(A | !B)", root.left());
+            assertEquals(0, root.leftDecisive());
+            assertEquals(BooleanExpression.REORDER_INTERVAL, root.rightDecisive());
+            assertTrue(root.rightFirst());
+            assertTrue(profile.getBranches().get(2).rightFirst());
+            assertFalse(expr.optimizeOrder());
+
+            for (long values = 0; values < 16; values++) {
+                assertEquals(interpreter.evaluate(values), expr.evaluate(values));
+            }
+        } finally {
+            BooleanExpression.setProfiling(previousProfiling);
+        }
+    }
+
+    @Test
+    void shouldKeepUndefinedIdentifierErrorsAfterReordering() {
+        boolean previousProfiling = BooleanExpression.isProfiling();
+        BooleanExpression.setProfiling(true);
+        try {
+            BooleanExpression expr = new BooleanExpression("A | B");
+            Map<String, Boolean> context = Map.of("A", false, "B", true);
+            for (int i = 0; i < BooleanExpression.REORDER_INTERVAL; i++) {
+                assertTrue(expr.evaluate(context));
+            }
+            assertTrue(expr.getProfile().getBranches().get(0).rightFirst());
+
+            assertTrue(expr.evaluate(Map.of("A", true)));
+            assertThrows(IllegalArgumentException.class, () -> expr.evaluate(Map.of("B", true)));
+        } finally {
+            BooleanExpression.setProfiling(previousProfiling);
+        }
+    }
+
+    @Test
+    void shouldShareSubexpressionsInStore() {
+        ExpressionStore store = new ExpressionStore(new SymbolTable());
+        BooleanExpression first = new BooleanExpression("(A | C) & B", store);
+        BooleanExpression second = new BooleanExpression("D | (A | C)", store);
+        assertSame(first.getAst().left, second.getAst().right);
+        assertEquals(7, store.size());
+    }
+
+    @Test
+    void shouldReuseParsedExpressionsFromCache() {
+        ExpressionStore store = new ExpressionStore();
+        BooleanExpression first = BooleanExpression.of("(A | C) & B", store);
+        BooleanExpression second = BooleanExpression.of(" ( A|C ) &\tB", store);
+        assertNotSame(first, second);
+        assertSame(first.getAst(), second.getAst());
+        assertSame(first.getProgram(), second.getProgram());
+        assertSame(first.getAst(), new BooleanExpression("(A|C)&B", store).getAst());
+        assertEquals(1, store.getParseCache().getMissCount());
+        assertEquals(2, store.getParseCache().getHitCount());
+        assertEquals("A B&C", ParseCache.normalize(" A  B & C "));
+    }
+
+    @Test
+    void shouldNotShareProfilesOfCachedExpressions() {
+        boolean previousProfiling = BooleanExpression.isProfiling();
+        BooleanExpression.setProfiling(true);
+        try {
+            BooleanExpression profiled = BooleanExpression.of("E | F");
+            for (int i = 0; i < BooleanExpression.REORDER_INTERVAL; i++) {
+                assertTrue(profiled.evaluate(Map.of("E", false, "F", true)));
+            }
+            assertTrue(profiled.getProfile().getBranches().get(0).rightFirst());
+
+            BooleanExpression other = BooleanExpression.of("E | F");
+            assertEquals(0, other.getProfile().getEvaluations());
+            assertFalse(other.getProfile().getBranches().get(0).rightFirst());
+        } finally {
+            BooleanExpression.setProfiling(previousProfiling);
+        }
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedExpressions() {
+        ParseCache cache = new ParseCache(16);
+        for (int i = 0; i < 100; i++) {
+            String source = "A" + i;
+            cache.get(source, true, BooleanExpression::new);
+        }
+        assertTrue(cache.size() <= 16);
+        assertEquals(100, cache.getMissCount());
+        assertEquals(100 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    void shouldMinimizeSopFromMinterms() {
+        BooleanExpression expr = BooleanExpression.sopFromMinterms(List.of(1, 3, 5, 7), List.of("A", "B", "C"));
+        assertEquals(AstNode.Type.IDENTIFIER, expr.getAst().type);
+        assertEquals("A", expr.getAst().value);
+
+        BooleanExpression xor = BooleanExpression.sopFromMinterms(List.of(1, 2), List.of("A", "B"));
+        assertEquals(AstNode.Type.OR, xor.getAst().type);
+        assertTrue(xor.evaluate(Map.of("A", true, "B", false)));
+        assertFalse(xor.evaluate(Map.of("A", true, "B", true)));
+    }
+
+    @Test
+    void shouldPreserveTruthTableWhenMinimizing() {
+        Random random = new Random(7);
+        for (int numIdentifiers : new int[] { 5, 9, 14 }) {
+            List<String> identifiers = new ArrayList<>();
+            for (int i = 0; i < numIdentifiers; i++) {
+                identifiers.add("V" + i);
+            }
+            for (int round = 0; round < 5; round++) {
+                BooleanExpression expr = new BooleanExpression(TestFixtures.randomExpression(random, identifiers, 5));
+                long[] bitmap = expr.getMintermBitmap(identifiers);
+                BooleanExpression minimized = BooleanExpression.fromMintermBitmap(bitmap, identifiers);
+                assertArrayEquals(bitmap, minimized.getMintermBitmap(identifiers));
+            }
+        }
+    }
+
+    @Test
+    void shouldMatchBitmapWithMintermSet() {
+        Random random = new Random(11);
+        for (int numIdentifiers : new int[] { 3, 8, 13 }) {
+            List<String> identifiers = new ArrayList<>();
+            for (int i = 0; i < numIdentifiers; i++) {
+                identifiers.add("V" + i);
+            }
+            for (int round = 0; round < 5; round++) {
+                BooleanExpression expr = new BooleanExpression(TestFixtures.randomExpression(random, identifiers, 5));
+                long[] bitmap = expr.getMintermBitmap(identifiers);
+                MintermSet minterms = expr.getMintermSet(identifiers);
+                assertArrayEquals(bitmap, minterms.toBitmap());
+                assertArrayEquals(bitmap, MintermSet.fromBitmap(bitmap, numIdentifiers).toBitmap());
+                assertArrayEquals(projectBitmap(bitmap, numIdentifiers, 2),
+                        minterms.project(2).toBitmap());
+            }
+        }
+    }
+
+    @Test
+    void shouldEnumerateMintermsOverMoreThan31Identifiers() {
+        List<String> identifiers = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            identifiers.add("W" + i);
+        }
+        BooleanExpression expr = new BooleanExpression("(W0 & !W44) | (W20 & W21 & W22)");
+        assertThrows(IllegalArgumentException.class, () -> expr.getMinterms(identifiers));
+
+        MintermSet minterms = expr.getMintermSet(identifiers);
+        long w0 = 1L << 44;
+        long w44 = 1L;
+        long w20 = 1L << 24;
+        long w21 = 1L << 23;
+        long w22 = 1L << 22;
+        assertEquals((1L << 43) + (1L << 42) - (1L << 40), minterms.size());
+        assertTrue(minterms.contains(w0));
+        assertFalse(minterms.contains(w0 | w44));
+        assertTrue(minterms.contains(w20 | w21 | w22 | w44));
+        assertTrue(minterms.cubeCount() < 10);
+
+        MintermSet projected = minterms.project(22);
+        assertEquals(23, projected.numVariables());
+        BooleanExpression relevant = BooleanExpression.fromMintermSet(projected, identifiers.subList(0, 23));
+        assertEquals(Set.of("W0", "W20", "W21", "W22"), new HashSet<>(relevant.getIdentifiers()));
+
+        BooleanExpression roundTrip = BooleanExpression.fromMintermSet(minterms, identifiers);
+        for (long minterm : new long[] { 0L, w0, w0 | w44, w20 | w21, w20 | w21 | w22, w20 | w21 | w22 | w44 }) {
+            Map<String, Boolean> context = new HashMap<>();
+            for (int i = 0; i < identifiers.size(); i++) {
+                context.put(identifiers.get(i), ((minterm >>> (identifiers.size() - 1 - i)) & 1L) != 0L);
+            }
+            assertEquals(expr.evaluate(context), roundTrip.evaluate(context));
+        }
+    }
+
+    @Test
+    void shouldSimplifyRedundantExpressions() {
+        assertEquals(AstNode.Type.IDENTIFIER, new BooleanExpression("!!A").getAst().type);
+        assertEquals(1, new BooleanExpression("A & A").getNodeCount());
+        assertEquals(1, new BooleanExpression("A | (A & B)").getNodeCount());
+        assertEquals(1, new BooleanExpression("(B | !B) & A").getNodeCount());
+        assertEquals(1, new BooleanExpression("1 & A | 0").getNodeCount());
+        assertEquals(AstNode.Type.FALSE, new BooleanExpression("A & !(B | 1) & C").getAst().type);
+
+        BooleanExpression contradiction = new BooleanExpression("A & C & !A");
+        assertEquals(AstNode.Type.FALSE, contradiction.getAst().type);
+        assertFalse(contradiction.evaluate(Map.of()));
+
+        BooleanExpression deMorgan = new BooleanExpression("!A & !B & !C");
+        assertEquals(AstNode.Type.NOT, deMorgan.getAst().type);
+        assertEquals(6, deMorgan.getNodeCount());
+        assertTrue(deMorgan.evaluate(Map.of("A", false, "B", false, "C", false)));
+        assertFalse(deMorgan.evaluate(Map.of("A", false, "B", true, "C", false)));
+    }
+
+    @Test
+    void shouldReachFixpointWhenSimplifying() {
+        assertEquals("!(A | B)", render(simplifyParsed("!(A | B) & !A")));
+        assertEquals("!A", render(simplifyParsed("!(A & B) & !A")));
+        List<String> sources = new ArrayList<>(List.of("!(A | B) & !A", "!(A & B) & !A", "!A & !(B | A) & !(A & C)"));
+        Random random = new Random(19);
+        for (int round = 0; round < 300; round++) {
+            sources.add(TestFixtures.randomExpression(random, List.of("A", "B", "C", "!A", "!B", "0", "1"), 5));
+        }
+        for (String source : sources) {
+            AstNode once = simplifyParsed(source);
+            assertEquals(render(once), render(ExpressionSimplifier.simplify(once, null)), source);
+        }
+    }
+
+    @Test
+    void shouldPreserveTruthTableWhenSimplifying() {
+        List<String> identifiers = List.of("V0", "V1", "V2", "V3", "V4", "V5", "V6");
+        List<String> operands = new ArrayList<>(identifiers);
+        operands.addAll(List.of("0", "1", "V0", "!V0", "(V1 & V2)"));
+        Random random = new Random(5);
+        boolean previousSimplifying = BooleanExpression.isSimplifying();
+        try {
+            for (int round = 0; round < 200; round++) {
+                String source = TestFixtures.randomExpression(random, operands, 5);
+                BooleanExpression.setSimplifying(false);
+                BooleanExpression raw = new BooleanExpression(source, new ExpressionStore());
+                BooleanExpression.setSimplifying(true);
+                BooleanExpression simplified = new BooleanExpression(source, new ExpressionStore());
+                assertArrayEquals(raw.getMintermBitmap(identifiers), simplified.getMintermBitmap(identifiers), source);
+                assertTrue(simplified.getNodeCount() <= raw.getNodeCount(), source);
+            }
+        } finally {
+            BooleanExpression.setSimplifying(previousSimplifying);
+        }
+    }
+
+    private static AstNode simplifyParsed(String source) {
+        return ExpressionSimplifier.simplify(new BooleanExpressionParser(source).parse(), null);
+    }
+
+    private static String render(AstNode node) {
+        return switch (node.type) {
+            case IDENTIFIER -> node.value;
+            case TRUE -> "1";
+            case FALSE -> "0";
+            case NOT -> "!" + render(node.operand);
+            case AND, OR -> "(" + render(node.left) + (node.type == AstNode.Type.AND ? " & " : " | ") + render(node.right) + ")";
+        };
+    }
+
+    @Test
+    void shouldCacheSimplifiedAndRawExpressionsSeparately() {
+        boolean previousSimplifying = BooleanExpression.isSimplifying();
+        try {
+            BooleanExpression.setSimplifying(true);
+            assertEquals(1, new BooleanExpression("X | !X | Y").getNodeCount());
+            BooleanExpression.setSimplifying(false);
+            BooleanExpression raw = new BooleanExpression("X | !X | Y");
+            assertEquals(6, raw.getNodeCount());
+            assertEquals(Set.of("X", "Y"), new HashSet<>(raw.getIdentifiers()));
+        } finally {
+            BooleanExpression.setSimplifying(previousSimplifying);
+        }
+    }
+
+    @Test
+    void shouldInternOnlySimplifiedNodes() {
+        boolean previousSimplifying = BooleanExpression.isSimplifying();
+        BooleanExpression.setSimplifying(true);
+        try {
+            ExpressionStore store = new ExpressionStore(new SymbolTable());
+            BooleanExpression expr = new BooleanExpression("(A | !!B) & (C | !C)", store);
+            assertEquals(3, expr.getNodeCount());
+            assertEquals(3, store.size());
+            assertSame(expr.getAst().left, new BooleanExpression("A", store).getAst());
+        } finally {
+            BooleanExpression.setSimplifying(previousSimplifying);
+        }
+    }
+
+    @Test
+    void shouldEvaluatePartialAssignments() {
+        BooleanExpression expr = new BooleanExpression("(A & B) | (!A & C)");
+        assertEquals(BooleanExpression.Truth.TRUE, expr.evaluatePartial(Map.of("A", true, "B", true)));
+        assertEquals(BooleanExpression.Truth.FALSE, expr.evaluatePartial(Map.of("A", false, "C", false)));
+        assertEquals(BooleanExpression.Truth.UNKNOWN, expr.evaluatePartial(Map.of("A", true)));
+        assertEquals(BooleanExpression.Truth.UNKNOWN, expr.evaluatePartial(Map.of()));
+        assertTrue(expr.isSatisfiable(Map.of("A", true)));
+        assertFalse(expr.isSatisfiable(Map.of("A", true, "B", false)));
+    }
+
+    @Test
+    void shouldFindCompletionsOfPartialAssignments() {
+        List<String> identifiers = List.of("A", "B", "C", "D", "E", "F");
+        Random random = new Random(13);
+        for (int round = 0; round < 100; round++) {
+            String source = TestFixtures.randomExpression(random, identifiers, 5);
+            BooleanExpression expr = new BooleanExpression(source);
+            long[] bitmap = expr.getMintermBitmap(identifiers);
+            int numberOfOpen = random.nextInt(identifiers.size() + 1);
+            long[] projected = projectBitmap(bitmap, identifiers.size(), numberOfOpen);
+            int assigned = identifiers.size() - numberOfOpen;
+            for (int prefix = 0; prefix < (1 << assigned); prefix++) {
+                Map<String, Boolean> context = new HashMap<>();
+                for (int i = 0; i < assigned; i++) {
+                    context.put(identifiers.get(i), ((prefix >>> (assigned - 1 - i)) & 1) != 0);
+                }
+                boolean satisfiable = ((projected[prefix >>> 6] >>> prefix) & 1L) != 0L;
+                assertEquals(satisfiable, expr.isSatisfiable(context), source + " " + context);
+                BooleanExpression.Truth truth = expr.evaluatePartial(context);
+                if (truth == BooleanExpression.Truth.FALSE) {
+                    assertFalse(satisfiable, source + " " + context);
+                }
+                if (truth == BooleanExpression.Truth.TRUE) {
+                    assertFalse(new BooleanExpression("!(" + source + ")").isSatisfiable(context), source + " " + context);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldCheckVariantsBySymbolId() {
+        ExpressionStore store = new ExpressionStore(new SymbolTable());
+        List<BooleanExpression> expressions = List.of(
+                new BooleanExpression("(A & B) | (!A & C)"),
+                new BooleanExpression("D | (A & B) | (!A & C)", store));
+        List<Boolean> values = Arrays.asList(null, false, true);
+        for (BooleanExpression expression : expressions) {
+            for (Boolean a : values) {
+                for (Boolean b : values) {
+                    for (Boolean c : values) {
+                        Variant variant = new Variant(List.of(
+                                new Attribute("C", c), new Attribute("A", a), new Attribute("B", b)));
+                        assertEquals(expression.isSatisfiable(variant.toDict()), expression.isSatisfiable(variant), variant.toString());
+                    }
+                }
+            }
+        }
+    }
+
+    private static long[] projectBitmap(long[] bitmap, int numIdentifiers, int numberOfProjected) {
+        int remaining = numIdentifiers - numberOfProjected;
+        long[] projected = new long[remaining <= 6 ? 1 : 1 << (remaining - 6)];
+        for (int minterm = 0; minterm < (1 << numIdentifiers); minterm++) {
+            if (((bitmap[minterm >>> 6] >>> minterm) & 1L) != 0L) {
+                int target = minterm >>> numberOfProjected;
+                projected[target >>> 6] |= 1L << target;
+            }
+        }
+        return projected;
+    }
 }
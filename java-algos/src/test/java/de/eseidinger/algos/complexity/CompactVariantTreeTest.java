@@ -0,0 +1,51 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CompactVariantTreeTest {
+
+    @Test
+    void shouldMatchVariantNodeTree() {
+        List<List<String>> symbolOrder = List.of(List.of("A", "B"), List.of("C"), List.of("D", "E", "F"));
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F");
+        List<Variant> possibleVariants = TestFixtures.randomPossibleVariants(new Random(7), symbols, 15);
+        List<Part> parts = TestFixtures.parts();
+        Variant root = VariantNode.createRootVariant(symbolOrder);
+        VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), root, symbolOrder, possibleVariants, parts);
+        CompactVariantTree<Part> compact = CompactVariantTree.build(new ArrayList<>(), root, symbolOrder, possibleVariants, parts);
+
+        Map<VariantNode<Part>, Integer> ids = new IdentityHashMap<>();
+        Iterator<VariantNode<Part>> nodes = tree.nodeIterator();
+        for (int node = 0; node < compact.size(); node++) {
+            VariantNode<Part> expected = nodes.next();
+            ids.put(expected, node);
+            assertEquals(expected.toString(), compact.toString(node));
+            assertEquals(expected.getVariant(), compact.getVariant(node));
+            assertEquals(expected.getParent() == null ? -1 : ids.get(expected.getParent()), compact.getParent(node));
+            assertEquals(expected.getChildren().size(), compact.getChildren(node).length);
+        }
+        assertFalse(nodes.hasNext());
+        assertArrayEquals(tree.getLeafNodes().stream().mapToInt(ids::get).toArray(), compact.getLeafNodes());
+    }
+
+    @Test
+    void shouldKeepRootWithoutPossibleChildren() {
+        List<List<String>> symbolOrder = List.of(List.of("A"));
+        CompactVariantTree<Part> compact = CompactVariantTree.build(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+            symbolOrder, List.of(), List.of(new Part("Part 1", new Condition(new BooleanExpression("A")))));
+        assertEquals(1, compact.size());
+        assertArrayEquals(new int[] { 0 }, compact.getLeafNodes());
+        assertEquals("[] -> {A: null} -> []", compact.toString(0));
+    }
+}
@@ -0,0 +1,116 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class IncrementalEvaluatorTest {
+
+    @Test
+    void shouldReportConditionalsWhoseValueChanged() {
+        ExpressionStore store = new ExpressionStore();
+        Part part1 = new Part("Part 1", new Condition(new BooleanExpression("A & B", store)));
+        Part part2 = new Part("Part 2", new Condition(new BooleanExpression("(A & B) | C", store)));
+        Part part3 = new Part("Part 3", new Condition(new BooleanExpression("D", store)));
+        IncrementalEvaluator<Part> evaluator = new IncrementalEvaluator<>(List.of(part1, part2, part3));
+
+        assertEquals(BooleanExpression.Truth.UNKNOWN, evaluator.value(0));
+        assertEquals(List.of(), evaluator.set("A", true));
+        assertEquals(Set.of(part1, part2), new HashSet<>(evaluator.set("B", true)));
+        assertEquals(BooleanExpression.Truth.TRUE, evaluator.value(1));
+        assertEquals(List.of(), evaluator.set("C", false));
+        assertEquals(Set.of(part1, part2), new HashSet<>(evaluator.set("A", false)));
+        assertEquals(BooleanExpression.Truth.FALSE, evaluator.value(1));
+        assertEquals(List.of(part3), evaluator.set("D", true));
+        assertEquals(List.of(), evaluator.set("E", true));
+    }
+
+    @Test
+    void shouldMatchPartialEvaluationAfterEveryStep() {
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F");
+        Random random = new Random(5);
+        ExpressionStore store = new ExpressionStore();
+        List<Part> parts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String source = TestFixtures.randomExpression(random, symbols, 4);
+            parts.add(new Part(source, new Condition(new BooleanExpression(source, store))));
+        }
+        IncrementalEvaluator<Part> evaluator = new IncrementalEvaluator<>(parts);
+        Map<String, Boolean> context = new HashMap<>();
+        List<BooleanExpression.Truth> previous = expected(parts, context);
+        for (int step = 0; step < 500; step++) {
+            String symbol = symbols.get(random.nextInt(symbols.size()));
+            int choice = random.nextInt(3);
+            Boolean value = choice == 2 ? null : choice == 1;
+            List<Part> changed;
+            if (step % 2 == 0) {
+                changed = evaluator.set(symbol, value);
+            } else {
+                List<Attribute> attributes = new ArrayList<>();
+                for (String name : symbols) {
+                    attributes.add(new Attribute(name, name.equals(symbol) ? value : context.get(name)));
+                }
+                changed = evaluator.update(new Variant(attributes));
+            }
+            context.put(symbol, value);
+            List<BooleanExpression.Truth> current = expected(parts, context);
+            Set<Part> expectedChanged = new HashSet<>();
+            for (int i = 0; i < parts.size(); i++) {
+                assertEquals(current.get(i), evaluator.value(i), parts.get(i) + " " + context);
+                if (current.get(i) != previous.get(i)) {
+                    expectedChanged.add(parts.get(i));
+                }
+            }
+            assertEquals(expectedChanged, new HashSet<>(changed));
+            assertEquals(expectedChanged.size(), changed.size());
+            previous = current;
+        }
+        assertTrue(evaluator.getConditionals().containsAll(parts));
+    }
+
+    @Test
+    void shouldFindHoldingConditionalsOfEveryLeaf() {
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F");
+        Random random = new Random(13);
+        List<Part> parts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String source = TestFixtures.randomExpression(random, symbols, 4);
+            parts.add(new Part(source, new Condition(new BooleanExpression(source))));
+        }
+        LeafEvaluator<Part> evaluator = new LeafEvaluator<>(parts);
+        for (int step = 0; step < 200; step++) {
+            List<Attribute> attributes = new ArrayList<>();
+            for (String symbol : symbols.subList(0, 4)) {
+                attributes.add(new Attribute(symbol, random.nextBoolean()));
+            }
+            attributes.add(new Attribute("E", random.nextInt(3) == 0 ? null : random.nextBoolean()));
+            Variant variant = new Variant(attributes);
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                if (parts.get(i).getCondition().check(variant)) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> holding = new ArrayList<>();
+            evaluator.evaluate(variant, holding::add);
+            assertEquals(expected, holding, variant.toString());
+        }
+    }
+
+    private static List<BooleanExpression.Truth> expected(List<Part> parts, Map<String, Boolean> context) {
+        List<BooleanExpression.Truth> values = new ArrayList<>();
+        for (Part part : parts) {
+            values.add(part.getCondition().getExpression().evaluatePartial(context));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,201 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedVariantStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadBackWrittenVariants() throws IOException {
+        List<String> symbols = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            symbols.add("S" + i);
+        }
+        Random random = new Random(23);
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            variants.add(randomVariant(random, symbols, 1));
+        }
+        Path file = directory.resolve("variants.bin");
+        try (MappedVariantStore.Writer writer = MappedVariantStore.create(file, symbols)) {
+            for (Variant variant : variants) {
+                writer.add(variant);
+            }
+        }
+        try (MappedVariantStore store = MappedVariantStore.open(file)) {
+            assertEquals(symbols, store.getSymbols());
+            assertEquals(variants.size(), store.size());
+            List<Variant> stored = new ArrayList<>();
+            for (int i = 0; i < variants.size(); i++) {
+                stored.add(store.get(i));
+            }
+            assertEquals(sorted(variants), sorted(stored));
+            assertThrows(IndexOutOfBoundsException.class, () -> store.get(variants.size()));
+        }
+    }
+
+    @Test
+    void shouldIgnoreRepeatedClose() throws IOException {
+        List<String> symbols = List.of("R0", "R1");
+        List<Variant> variants = List.of(
+            new Variant(List.of(new Attribute("R0", true), new Attribute("R1", null))),
+            new Variant(List.of(new Attribute("R0", false), new Attribute("R1", true))));
+        Path file = directory.resolve("closed.bin");
+        try (MappedVariantStore.Writer writer = MappedVariantStore.create(file, symbols)) {
+            for (Variant variant : variants) {
+                writer.add(variant);
+            }
+            writer.close();
+            writer.close();
+        }
+        try (MappedVariantStore store = MappedVariantStore.open(file)) {
+            assertEquals(2, store.size());
+            assertEquals(sorted(variants), sorted(List.of(store.get(0), store.get(1))));
+        }
+    }
+
+    @Test
+    void shouldSortRecordsBySymbolOrder() throws IOException {
+        List<String> symbols = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            symbols.add("P" + i);
+        }
+        Random random = new Random(31);
+        List<Variant> possible = new ArrayList<>();
+        Path file = directory.resolve("sorted.bin");
+        try (MappedVariantStore.Writer writer = MappedVariantStore.create(file, symbols)) {
+            for (int i = 0; i < 500; i++) {
+                Variant variant = randomVariant(random, symbols, i % 10 == 0 ? 1 : 0);
+                possible.add(variant);
+                writer.add(variant);
+            }
+        }
+        MappedVariantStore store = MappedVariantStore.open(file);
+        try (store) {
+            for (long i = 1; i < store.size(); i++) {
+                assertTrue(compare(store.get(i - 1), store.get(i), symbols) <= 0);
+            }
+            for (int query = 0; query < 300; query++) {
+                Variant variant = possible.get(random.nextInt(possible.size()));
+                int prefix = random.nextInt(symbols.size() + 1);
+                List<Attribute> attributes = new ArrayList<>();
+                for (int i = 0; i < symbols.size(); i++) {
+                    Boolean value = i < prefix ? variant.getValue(SymbolTable.global().find(symbols.get(i))) : null;
+                    if (i < prefix && value == null || query % 3 == 0 && i >= prefix && random.nextInt(20) == 0) {
+                        value = random.nextBoolean();
+                    }
+                    attributes.add(new Attribute(symbols.get(i), value));
+                }
+                Variant partial = new Variant(attributes);
+                assertEquals(partial.isPossible(possible), partial.isPossible(store), partial.toString());
+            }
+        }
+        assertThrows(IllegalStateException.class, () -> store.isPossible(new Variant(List.of())));
+    }
+
+    @Test
+    void shouldMatchLinearScan() throws IOException {
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F");
+        Random random = new Random(29);
+        for (int round = 0; round < 10; round++) {
+            List<Variant> possible = new ArrayList<>();
+            Path file = directory.resolve("round" + round + ".bin");
+            try (MappedVariantStore.Writer writer = MappedVariantStore.create(file, symbols.subList(0, 5))) {
+                for (int i = 0; i < round * 3; i++) {
+                    Variant variant = randomVariant(random, symbols.subList(0, 5), 6);
+                    possible.add(variant);
+                    writer.add(variant);
+                }
+            }
+            try (MappedVariantStore store = MappedVariantStore.open(file)) {
+                for (int query = 0; query < 200; query++) {
+                    Variant variant = randomVariant(random, symbols, 3);
+                    assertEquals(variant.isPossible(possible), variant.isPossible(store), variant.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldBuildTreeAgainstStore() throws IOException {
+        List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B", "C"));
+        List<Variant> possibleVariants = List.of(
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", true), new Attribute("C", false))),
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", false), new Attribute("C", true))),
+            new Variant(List.of(new Attribute("A", false), new Attribute("B", true), new Attribute("C", true)))
+        );
+        List<Part> parts = List.of(
+            new Part("Part 1", new Condition(new BooleanExpression("B & (A | C)"))),
+            new Part("Part 2", new Condition(new BooleanExpression("C & (A | B)")))
+        );
+        Path file = directory.resolve("variants.bin");
+        try (MappedVariantStore.Writer writer = MappedVariantStore.create(file, List.of("A", "B", "C"))) {
+            for (Variant variant : possibleVariants) {
+                writer.add(variant);
+            }
+        }
+        try (MappedVariantStore store = MappedVariantStore.open(file)) {
+            Variant root = VariantNode.createRootVariant(symbolOrder);
+            List<String> expected = new VariantNode<>(new ArrayList<>(), root, symbolOrder, possibleVariants, parts)
+                .getLeafNodes().stream().map(VariantNode::toString).toList();
+            List<String> leafs = new VariantNode<>(new ArrayList<>(), root, symbolOrder, store, parts)
+                .getLeafNodes().stream().map(VariantNode::toString).toList();
+            assertEquals(3, leafs.size());
+            assertEquals(expected, leafs);
+        }
+    }
+
+    @Test
+    void shouldRejectUnknownSymbols() throws IOException {
+        try (MappedVariantStore.Writer writer = MappedVariantStore.create(directory.resolve("variants.bin"), List.of("A"))) {
+            Variant variant = new Variant(List.of(new Attribute("A", true), new Attribute("B", null)));
+            assertThrows(IllegalArgumentException.class, () -> writer.add(variant));
+        }
+        try (MappedVariantStore store = MappedVariantStore.open(directory.resolve("variants.bin"))) {
+            assertEquals(0, store.size());
+            assertFalse(store.isPossible(new Variant(List.of())));
+        }
+    }
+
+    private static List<String> sorted(List<Variant> variants) {
+        return variants.stream().map(Variant::toString).sorted().toList();
+    }
+
+    private static int compare(Variant first, Variant second, List<String> symbols) {
+        for (String symbol : symbols) {
+            int id = SymbolTable.global().find(symbol);
+            int order = Integer.compare(digit(first.getValue(id)), digit(second.getValue(id)));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    private static int digit(Boolean value) {
+        return value == null ? 2 : value ? 1 : 0;
+    }
+
+    private static Variant randomVariant(Random random, List<String> symbols, int openWeight) {
+        List<Attribute> attributes = new ArrayList<>();
+        for (String symbol : symbols) {
+            int choice = random.nextInt(openWeight + 2);
+            attributes.add(new Attribute(symbol, choice >= 2 ? null : choice == 1));
+        }
+        return new Variant(attributes);
+    }
+}
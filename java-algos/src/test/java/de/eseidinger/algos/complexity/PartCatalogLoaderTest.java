@@ -0,0 +1,69 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PartCatalogLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldLoadPartsInFileOrder() throws IOException {
+        Path catalog = directory.resolve("catalog.txt");
+        Files.writeString(catalog, "# parts\nPart 1: B & (A | C)\n\n  Part 2 :C & (A | B)\r\nPart 3: !A");
+
+        PartCatalogLoader loader = new PartCatalogLoader();
+        List<Part> parts = loader.load(catalog);
+
+        assertEquals(List.of("Part 1", "Part 2", "Part 3"), parts.stream().map(Part::toString).toList());
+        assertEquals(5, loader.getLinesLoaded());
+        assertSame(loader.getStore(), parts.get(0).getCondition().getStore());
+        Variant variant = new Variant(List.of(
+            new Attribute("A", false),
+            new Attribute("B", true),
+            new Attribute("C", true)
+        ));
+        assertTrue(parts.get(0).getCondition().check(variant));
+        assertTrue(parts.get(1).getCondition().check(variant));
+        assertTrue(parts.get(2).getCondition().check(variant));
+    }
+
+    @Test
+    void shouldLoadCatalogSpanningSeveralChunks() throws IOException {
+        Path catalog = directory.resolve("large.txt");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 60_000; i++) {
+            lines.add("P" + i + ": (A" + (i % 50) + " | B" + (i % 7) + ") & !C" + (i % 3));
+        }
+        Files.write(catalog, lines);
+
+        PartCatalogLoader loader = new PartCatalogLoader();
+        List<Part> parts = loader.load(catalog);
+
+        assertEquals(60_000, parts.size());
+        for (int i = 0; i < parts.size(); i += 997) {
+            assertEquals("P" + i, parts.get(i).toString());
+        }
+        assertFalse(loader.getLinesPerSecond() <= 0);
+    }
+
+    @Test
+    void shouldRejectLinesWithoutName() throws IOException {
+        Path catalog = directory.resolve("broken.txt");
+        Files.writeString(catalog, "Part 1: A\nA & B\n");
+        assertThrows(IllegalArgumentException.class, () -> new PartCatalogLoader().load(catalog));
+    }
+}
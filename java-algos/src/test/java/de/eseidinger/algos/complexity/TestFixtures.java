@@ -0,0 +1,71 @@
+package de.eseidinger.algos.complexity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random inputs and the conditionals shared by the tests.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * A random expression over {@code identifiers} of at most {@code depth} nested operators.
+     */
+    static String randomExpression(Random random, List<String> identifiers, int depth) {
+        int choice = depth == 0 ? 0 : random.nextInt(4);
+        return switch (choice) {
+            case 0 -> identifiers.get(random.nextInt(identifiers.size()));
+            case 1 -> "!" + randomExpression(random, identifiers, depth - 1);
+            default -> "(" + randomExpression(random, identifiers, depth - 1) + (choice == 2 ? " & " : " | ")
+                    + randomExpression(random, identifiers, depth - 1) + ")";
+        };
+    }
+
+    /**
+     * {@code count} random possible variants over {@code symbols}, each symbol open with a
+     * probability of one in four.
+     */
+    static List<Variant> randomPossibleVariants(Random random, List<String> symbols, int count) {
+        List<Variant> possibleVariants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<Attribute> attributes = new ArrayList<>();
+            for (String symbol : symbols) {
+                attributes.add(new Attribute(symbol, random.nextInt(4) == 0 ? null : random.nextBoolean()));
+            }
+            possibleVariants.add(new Variant(attributes));
+        }
+        return possibleVariants;
+    }
+
+    /**
+     * Every complete variant over {@code symbols}, in the order of
+     * {@link VariantNode#boolFromInteger(int, int)}.
+     */
+    static List<Variant> allVariants(List<String> symbols) {
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < 1 << symbols.size(); i++) {
+            boolean[] values = VariantNode.boolFromInteger(i, symbols.size());
+            List<Attribute> attributes = new ArrayList<>();
+            for (int j = 0; j < values.length; j++) {
+                attributes.add(new Attribute(symbols.get(j), values[j]));
+            }
+            variants.add(new Variant(attributes));
+        }
+        return variants;
+    }
+
+    /**
+     * Parts with conditions over the symbols A to F.
+     */
+    static List<Part> parts() {
+        return List.of(
+            new Part("Part 1", new Condition(new BooleanExpression("A & (D | !C)"))),
+            new Part("Part 2", new Condition(new BooleanExpression("!B | E & F"))),
+            new Part("Part 3", new Condition(new BooleanExpression("C & D & !A")))
+        );
+    }
+}
@@ -0,0 +1,54 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class VariantBatchTest {
+
+    @Test
+    void shouldCheckCompleteVariants() {
+        VariantBatch batch = new VariantBatch(List.of(
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", false))),
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", true))),
+            new Variant(List.of(new Attribute("A", false), new Attribute("B", false)))
+        ));
+        assertEquals(3, batch.size());
+        assertArrayEquals(new long[] { 0b001L }, batch.check(new BooleanExpression("A & !B")));
+        assertArrayEquals(new long[] { 0b110L }, batch.check(new BooleanExpression("!(A & !B)")));
+        assertArrayEquals(new long[] { 0b111L }, batch.check(new BooleanExpression("A | !A")));
+    }
+
+    @Test
+    void shouldMatchSingleChecksAcrossBlocks() {
+        List<String> symbols = List.of("A", "B", "C", "D", "E");
+        Random random = new Random(11);
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < 2 * VariantBatch.BLOCK_WORDS * Long.SIZE + 37; i++) {
+            List<Attribute> attributes = new ArrayList<>();
+            for (String symbol : symbols) {
+                int choice = random.nextInt(8);
+                attributes.add(new Attribute(symbol, choice == 0 ? null : choice % 2 == 0));
+            }
+            variants.add(new Variant(attributes));
+        }
+        VariantBatch batch = new VariantBatch(variants);
+        List<String> sources = List.of("(A & B) | (!C & D)", "!(A | E) & (B | !D)", "A & F", "!F | (C & !E)", "1", "0");
+        for (String source : sources) {
+            Condition condition = new Condition(new BooleanExpression(source));
+            long[] result = condition.check(batch);
+            assertEquals((variants.size() + Long.SIZE - 1) / Long.SIZE, result.length);
+            for (int i = 0; i < variants.size(); i++) {
+                assertEquals(condition.check(variants.get(i)), ((result[i >>> 6] >>> i) & 1L) != 0L, source + " " + variants.get(i));
+            }
+            for (int i = variants.size(); i < result.length * Long.SIZE; i++) {
+                assertEquals(0L, (result[i >>> 6] >>> i) & 1L, source);
+            }
+        }
+    }
+}
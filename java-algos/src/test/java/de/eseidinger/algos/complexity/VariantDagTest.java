@@ -0,0 +1,71 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class VariantDagTest {
+
+    @Test
+    void shouldShareEquivalentSubtrees() {
+        List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B"), List.of("C"));
+        List<Variant> possibleVariants = TestFixtures.allVariants(List.of("A", "B", "C"));
+        List<Part> parts = List.of(new Part("Part 1", new Condition(new BooleanExpression("C"))));
+        VariantDag<Part> dag = VariantDag.build(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+            symbolOrder, possibleVariants, parts);
+
+        assertEquals(4, dag.size());
+        assertEquals(6, dag.edgeCount());
+        assertEquals(8, dag.countLeafPaths());
+        int[] children = dag.getChildren(0);
+        assertEquals(2, children.length);
+        assertArrayEquals(dag.getChildren(children[0]), dag.getChildren(children[1]));
+        List<String> leafs = new ArrayList<>();
+        dag.forEachLeaf((variant, conditionals) -> leafs.add(variant + " -> " + conditionals));
+        assertEquals("{A: false, B: false, C: false} -> []", leafs.get(0));
+        assertEquals("{A: true, B: true, C: true} -> [Part 1]", leafs.get(7));
+    }
+
+    @Test
+    void shouldBuildTreeWithoutCompletionIds() {
+        List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B"), List.of("C"));
+        List<Variant> possibleVariants = TestFixtures.allVariants(List.of("A", "B", "C"));
+        List<Part> parts = List.of(new Part("Part 1", new Condition(new BooleanExpression("C"))));
+        PossibleVariants scan = variant -> variant.isPossible(possibleVariants);
+        VariantDag<Part> dag = VariantDag.build(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+            symbolOrder, scan, parts);
+
+        assertEquals(15, dag.size());
+        assertEquals(dag.size() - 1, dag.edgeCount());
+        assertEquals(8, dag.countLeafPaths());
+    }
+
+    @Test
+    void shouldMatchVariantNodeLeaves() {
+        List<List<String>> symbolOrder = List.of(List.of("A", "B"), List.of("C"), List.of("D"), List.of("E", "F"));
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F");
+        Random random = new Random(13);
+        for (int round = 0; round < 10; round++) {
+            List<Variant> possibleVariants = TestFixtures.randomPossibleVariants(random, symbols, 5 + random.nextInt(30));
+            List<Part> parts = new ArrayList<>(TestFixtures.parts());
+            parts.add(new Part("Part 4", new Condition(new BooleanExpression("C & G | !A"))));
+            parts.add(new Part("Part 5", new Condition(new BooleanExpression("E | !E"))));
+            Variant root = VariantNode.createRootVariant(symbolOrder);
+            VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), root, symbolOrder, possibleVariants, parts);
+            List<String> expected = tree.getLeafNodes().stream()
+                .map(leaf -> leaf.getVariant() + " -> " + leaf.toString().substring(leaf.toString().lastIndexOf("-> [") + 3))
+                .toList();
+
+            VariantDag<Part> dag = VariantDag.build(new ArrayList<>(), root, symbolOrder, possibleVariants, parts);
+            List<String> leafs = new ArrayList<>();
+            dag.forEachLeaf((variant, conditionals) -> leafs.add(variant + " -> " + conditionals));
+            assertEquals(expected, leafs);
+            assertEquals(expected.size(), dag.countLeafPaths());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package de.eseidinger.algos.complexity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class VariantIndexTest {
+
+    @Test
+    void shouldAnswerPrefixQueries() {
+        List<Variant> possible = List.of(
+            variant(true, true, false),
+            variant(true, false, true),
+            variant(false, true, true)
+        );
+        VariantIndex index = new VariantIndex(List.of("A", "B", "C"), possible);
+        assertTrue(index.isPossible(variant(null, null, null)));
+        assertTrue(index.isPossible(variant(true, null, null)));
+        assertTrue(index.isPossible(variant(false, true, null)));
+        assertFalse(index.isPossible(variant(false, false, null)));
+        assertTrue(index.isPossible(variant(null, null, false)));
+        assertFalse(index.isPossible(variant(false, null, false)));
+        assertFalse(new VariantIndex(List.of("A", "B", "C"), List.of()).isPossible(variant(null, null, null)));
+        assertFalse(index.isPossible(new Variant(List.of(new Attribute("D", true)))));
+    }
+
+    @Test
+    void shouldIdentifyEqualCompletions() {
+        List<Variant> possible = List.of(
+            variant(true, true, false),
+            variant(false, true, false),
+            variant(false, false, true),
+            variant(true, false, null)
+        );
+        VariantIndex index = new VariantIndex(List.of("A", "B", "C"), possible);
+        assertEquals(index.completionId(variant(true, true, null)), index.completionId(variant(false, true, null)));
+        assertNotEquals(index.completionId(variant(false, false, null)), index.completionId(variant(true, false, null)));
+        assertNotEquals(index.completionId(variant(true, null, null)), index.completionId(variant(false, null, null)));
+        assertEquals(-1, index.completionId(variant(null, true, null)));
+        assertEquals(-1, index.completionId(variant(true, true, true)));
+        assertTrue(index.completionId(variant(null, null, null)) >= 0);
+    }
+
+    @Test
+    void shouldMatchLinearScan() {
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F");
+        Random random = new Random(17);
+        for (int round = 0; round < 20; round++) {
+            List<Variant> possible = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(20); i++) {
+                possible.add(randomVariant(random, symbols, 6));
+            }
+            VariantIndex index = new VariantIndex(symbols.subList(0, 4), possible);
+            for (int query = 0; query < 200; query++) {
+                Variant variant = randomVariant(random, symbols, 3);
+                assertEquals(variant.isPossible(possible), variant.isPossible(index), variant.toString());
+            }
+        }
+    }
+
+    private static Variant variant(Boolean a, Boolean b, Boolean c) {
+        return new Variant(List.of(new Attribute("A", a), new Attribute("B", b), new Attribute("C", c)));
+    }
+
+    private static Variant randomVariant(Random random, List<String> symbols, int openWeight) {
+        List<Attribute> attributes = new ArrayList<>();
+        for (String symbol : symbols) {
+            int choice = random.nextInt(openWeight + 2);
+            attributes.add(new Attribute(symbol, choice >= 2 ? null : choice == 1));
+        }
+        return new Variant(attributes);
+    }
+}
@@ -3,7 +3,11 @@ package de.eseidinger.algos.complexity;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 class VariantTreeTest {
 
@@ -91,6 +95,28 @@ class VariantTreeTest {
         assertEquals("{A: true, B: false, C: true}", derivedVariants.get(1).toString());
     }
 
+    @Test
+    void testVariantStreamDerivedVariants() {
+        List<String> symbols = List.of("A", "B", "C", "D", "E", "F", "G");
+        Variant originalVariant = new Variant(symbols.stream().map(symbol -> new Attribute(symbol, null)).toList());
+        List<String> nextSymbols = symbols.subList(0, 6);
+        List<boolean[]> values = new ArrayList<>();
+        for (int i = 0; i < 1 << nextSymbols.size(); i++) {
+            values.add(VariantNode.boolFromInteger(i, nextSymbols.size()));
+        }
+        List<Variant> allVariants = originalVariant.deriveVariants(nextSymbols, values);
+        assertEquals(allVariants, originalVariant.streamDerivedVariants(nextSymbols).toList());
+        assertEquals(allVariants, originalVariant.streamDerivedVariants(nextSymbols).parallel().toList());
+
+        List<Variant> possibleVariants = TestFixtures.randomPossibleVariants(new Random(5), symbols, 12);
+        VariantIndex index = new VariantIndex(symbols, possibleVariants);
+        List<Variant> expected = allVariants.stream().filter(variant -> variant.isPossible(possibleVariants)).toList();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, originalVariant.streamDerivedVariants(nextSymbols, index).toList());
+        assertEquals(expected, originalVariant.streamDerivedVariants(nextSymbols, index).parallel().toList());
+        assertEquals(List.of(), originalVariant.streamDerivedVariants(nextSymbols, variant -> false).toList());
+    }
+
     @Test
     void testVariantIsDerivedFromOrEqual() {
         Variant originalVariant = new Variant(List.of(
@@ -167,6 +193,45 @@ class VariantTreeTest {
         assertFalse(nonEmptyVariant.isEmpty());
     }
 
+    @Test
+    void testVariantBitsAcrossWords() {
+        List<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            attributes.add(new Attribute("W" + i, i % 3 == 0 ? null : i % 3 == 1));
+        }
+        Variant variant = new Variant(attributes);
+        Variant same = new Variant(new ArrayList<>(attributes));
+        assertEquals(variant, same);
+        assertEquals(variant.hashCode(), same.hashCode());
+        assertEquals(attributes, variant.getAttributes());
+
+        Variant derived = variant.deriveVariant("W0", true).deriveVariant("W149", false);
+        assertNotEquals(variant, derived);
+        assertTrue(derived.isDerivedFromOrEqual(variant));
+        assertFalse(variant.isDerivedFromOrEqual(derived));
+        assertFalse(derived.deriveVariant("W1", false).isDerivedFromOrEqual(variant));
+        assertEquals(true, derived.toDict().get("W0"));
+        assertEquals(false, derived.toDict().get("W149"));
+        assertSame(variant, variant.deriveVariant("Unknown", true));
+        assertFalse(derived.isFinal(List.of("W3", "W149")));
+        assertTrue(derived.isFinal(List.of("W0", "W149", "W1")));
+
+        Variant high = new Variant(List.of(new Attribute("W149", false)));
+        Variant open = new Variant(List.of(new Attribute("W149", null)));
+        assertEquals(high, open.deriveVariant("W149", false));
+        assertEquals(high.hashCode(), open.deriveVariant("W149", false).hashCode());
+        assertTrue(derived.isDerivedFromOrEqual(high));
+        assertFalse(high.isDerivedFromOrEqual(derived));
+        assertTrue(variant.isDerivedFromOrEqual(high));
+        assertFalse(variant.isDerivedFromOrEqual(open.deriveVariant("W149", true)));
+        assertTrue(high.isDerivedFromOrEqual(open));
+        assertNull(high.toDict().get("W0"));
+        assertTrue(open.isFinal(List.of("W0")));
+        assertFalse(open.isFinal(List.of("W0", "W149")));
+        assertEquals(List.of(high, open.deriveVariant("W149", true)),
+            open.streamDerivedVariants(List.of("W149")).toList());
+    }
+
     @Test
     void testConditionCheck() {
         BooleanExpression boolExpr = new BooleanExpression("B & (A | C)");
@@ -187,6 +252,79 @@ class VariantTreeTest {
         assertTrue(condition.check(variant2));
     }
 
+    @Test
+    void testConditionCheckPartialVariant() {
+        Condition condition = new Condition(new BooleanExpression("A & !B"));
+
+        assertTrue(condition.check(new Variant(List.of(
+            new Attribute("A", true),
+            new Attribute("B", null),
+            new Attribute("C", false)
+        ))));
+        assertFalse(condition.check(new Variant(List.of(
+            new Attribute("A", null),
+            new Attribute("B", true),
+            new Attribute("C", true)
+        ))));
+        assertTrue(condition.check(new Variant(List.of(
+            new Attribute("A", true),
+            new Attribute("B", false),
+            new Attribute("C", true)
+        ))));
+    }
+
+    @Test
+    void testConditionCheckWithoutAssignedConditionSymbols() {
+        Condition condition = new Condition(new BooleanExpression("A & !B"));
+        Variant variant = new Variant(List.of(
+            new Attribute("A", null),
+            new Attribute("C", true)
+        ));
+        assertTrue(condition.check(variant));
+        assertFalse(new Condition(new BooleanExpression("A & !A | 0")).check(variant));
+    }
+
+    @Test
+    void testConditionCheckWithBdd() {
+        BddManager bdd = new BddManager(List.of("A", "B", "C"));
+        List<String> expressions = List.of("A & !B", "(A | C) & (B | !C)", "!A & !B & C", "A | B");
+        List<Boolean> values = Arrays.asList(null, false, true);
+        for (String expression : expressions) {
+            Condition minterms = new Condition(new BooleanExpression(expression));
+            Condition diagram = new Condition(new BooleanExpression(expression), bdd);
+            for (Boolean a : values) {
+                for (Boolean b : values) {
+                    for (Boolean c : values) {
+                        Variant variant = new Variant(List.of(
+                            new Attribute("A", a),
+                            new Attribute("B", b),
+                            new Attribute("C", c)
+                        ));
+                        assertEquals(minterms.check(variant), diagram.check(variant), expression + " " + variant);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testConditionCheckWideCondition() {
+        StringBuilder expression = new StringBuilder("(S0 | S1) & !(S2");
+        List<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("S0", false));
+        attributes.add(new Attribute("S1", null));
+        attributes.add(new Attribute("S2", null));
+        for (int i = 3; i < 40; i++) {
+            expression.append(" & S").append(i);
+            attributes.add(new Attribute("S" + i, null));
+        }
+        Condition condition = new Condition(new BooleanExpression(expression.append(")").toString()));
+
+        assertTrue(condition.check(new Variant(attributes)));
+        attributes.set(1, new Attribute("S1", false));
+        assertFalse(condition.check(new Variant(attributes)));
+    }
+
     @Test
     void testVariantNodeGetLeafNodes() {
         List<String> symbolOrder1 = List.of("A");
@@ -229,4 +367,185 @@ class VariantTreeTest {
         assertEquals(possibleVariants.get(1), leafs.get(1).getVariant());
         assertEquals(possibleVariants.get(0), leafs.get(2).getVariant());
     }
+
+    @Test
+    void testPrintTree() {
+        List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B"), List.of("C"));
+        List<Variant> possibleVariants = List.of(
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", true), new Attribute("C", false))),
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", false), new Attribute("C", true))),
+            new Variant(List.of(new Attribute("A", false), new Attribute("B", true), new Attribute("C", true)))
+        );
+        List<Part> parts = List.of(
+            new Part("Part 1", new Condition(new BooleanExpression("B & (A | C)"))),
+            new Part("Part 2", new Condition(new BooleanExpression("C & (A | B)")))
+        );
+        VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+            symbolOrder, possibleVariants, parts);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream previousOut = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            VariantTreeUtils.printTree(tree, "+- ", new ArrayList<>(), VariantNode::toString);
+        } finally {
+            System.setOut(previousOut);
+        }
+
+        List<String> expected = List.of(
+            "[] -> {A: null, B: null, C: null} -> []",
+            "+- [A] -> {A: false, B: null, C: null} -> []",
+            "|  +- [B] -> {A: false, B: true, C: null} -> []",
+            "|     +- [C] -> {A: false, B: true, C: true} -> [Part 1, Part 2]",
+            "+- [A] -> {A: true, B: null, C: null} -> []",
+            "   +- [B] -> {A: true, B: false, C: null} -> []",
+            "   |  +- [C] -> {A: true, B: false, C: true} -> [Part 2]",
+            "   +- [B] -> {A: true, B: true, C: null} -> []",
+            "      +- [C] -> {A: true, B: true, C: false} -> [Part 1]"
+        );
+        assertEquals(expected, output.toString(StandardCharsets.UTF_8).lines().toList());
+    }
+
+    @Test
+    void testVariantNodeWithSharedExpressionStore() {
+        List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B", "C"));
+        List<Variant> possibleVariants = List.of(
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", true), new Attribute("C", false))),
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", false), new Attribute("C", true))),
+            new Variant(List.of(new Attribute("A", false), new Attribute("B", true), new Attribute("C", true)))
+        );
+        ExpressionStore store = new ExpressionStore();
+        List<Part> parts = List.of(
+            new Part("Part 1", new Condition(new BooleanExpression("B & (A | C)", store))),
+            new Part("Part 2", new Condition(new BooleanExpression("C & (A | B)", store))),
+            new Part("Part 3", new Condition(new BooleanExpression("!(A | C) | A & B", store)))
+        );
+
+        VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+            symbolOrder, possibleVariants, parts);
+
+        List<String> leafs = tree.getLeafNodes().stream().map(VariantNode::toString).toList();
+        assertEquals(List.of(
+            "[B, C] -> {A: false, B: true, C: true} -> [Part 1, Part 2]",
+            "[B, C] -> {A: true, B: false, C: true} -> [Part 2]",
+            "[B, C] -> {A: true, B: true, C: false} -> [Part 1, Part 3]"
+        ), leafs);
+    }
+
+    @Test
+    void testVariantNodeProfilesConditionChecks() {
+        boolean previousProfiling = BooleanExpression.isProfiling();
+        BooleanExpression.setProfiling(true);
+        try {
+            List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B", "C"));
+            List<Variant> possibleVariants = List.of(
+                new Variant(List.of(new Attribute("A", true), new Attribute("B", true), new Attribute("C", false))),
+                new Variant(List.of(new Attribute("A", false), new Attribute("B", true), new Attribute("C", true)))
+            );
+            BooleanExpression expression = new BooleanExpression("B & (A | X)");
+            List<Part> parts = List.of(new Part("Part 1", new Condition(expression)));
+
+            VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+                symbolOrder, possibleVariants, parts);
+
+            assertEquals(2, tree.getLeafNodes().size());
+            ExpressionProfile profile = expression.getProfile();
+            assertTrue(profile.getEvaluations() > 0);
+            assertTrue(profile.getBranches().get(0).leftEvaluations() > 0);
+            assertTrue(profile.getBranches().get(1).leftEvaluations() > 0);
+        } finally {
+            BooleanExpression.setProfiling(previousProfiling);
+        }
+    }
+
+    @Test
+    void testVariantNodeBuildParallel() {
+        List<List<String>> symbolOrder = List.of(List.of("A", "B"), List.of("C"), List.of("D", "E"));
+        List<String> symbols = List.of("A", "B", "C", "D", "E");
+        List<Variant> possibleVariants = TestFixtures.randomPossibleVariants(new Random(3), symbols, 12);
+        List<Part> parts = TestFixtures.parts();
+        Variant root = VariantNode.createRootVariant(symbolOrder);
+        List<String> expected = new VariantNode<>(new ArrayList<>(), root, symbolOrder, possibleVariants, parts)
+            .getLeafNodes().stream().map(VariantNode::toString).toList();
+        assertFalse(expected.isEmpty());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int sequentialDepth : new int[]{0, 1, 2, 10}) {
+                VariantNode<Part> tree = VariantNode.buildParallel(new ArrayList<>(), root, symbolOrder, possibleVariants,
+                    parts, pool, sequentialDepth);
+                assertEquals(expected, tree.getLeafNodes().stream().map(VariantNode::toString).toList());
+                assertNull(tree.getParent());
+                assertSame(tree, tree.getChildren().get(0).getParent());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> VariantNode.buildParallel(new ArrayList<>(), root, symbolOrder,
+            possibleVariants, parts, ForkJoinPool.commonPool(), -1));
+    }
+
+    @Test
+    void testVariantNodeBuildLazy() {
+        List<List<String>> symbolOrder = List.of(List.of("A"), List.of("B", "C"));
+        List<Variant> possibleVariants = List.of(
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", true), new Attribute("C", false))),
+            new Variant(List.of(new Attribute("A", true), new Attribute("B", false), new Attribute("C", true))),
+            new Variant(List.of(new Attribute("A", false), new Attribute("B", true), new Attribute("C", true)))
+        );
+        List<Part> parts = List.of(
+            new Part("Part 1", new Condition(new BooleanExpression("B & (A | C)"))),
+            new Part("Part 2", new Condition(new BooleanExpression("C & (A | B)")))
+        );
+        Variant root = VariantNode.createRootVariant(symbolOrder);
+        List<String> expected = new VariantNode<>(new ArrayList<>(), root, symbolOrder, possibleVariants, parts)
+            .getLeafNodes().stream().map(VariantNode::toString).toList();
+
+        for (boolean softChildren : new boolean[]{false, true}) {
+            VariantNode<Part> tree = VariantNode.buildLazy(new ArrayList<>(), root, symbolOrder, possibleVariants, parts, softChildren);
+            assertFalse(tree.isExpanded());
+            List<VariantNode<Part>> children = tree.getChildren();
+            assertTrue(tree.isExpanded());
+            assertEquals(2, children.size());
+            assertFalse(children.get(0).isExpanded());
+            assertSame(tree, children.get(1).getParent());
+            assertEquals(1, children.get(0).getChildren().size());
+            assertEquals(expected, tree.getLeafNodes().stream().map(VariantNode::toString).toList());
+        }
+    }
+
+    @Test
+    void testVariantNodeDeepTree() {
+        int groups = 5_000;
+        List<List<String>> symbolOrder = new ArrayList<>();
+        List<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < groups; i++) {
+            symbolOrder.add(List.of("S" + i));
+            attributes.add(new Attribute("S" + i, i % 2 == 0));
+        }
+        List<Part> parts = List.of(new Part("Part 1", new Condition(new BooleanExpression("S0 & !S4999"))));
+        VariantNode<Part> tree = new VariantNode<>(new ArrayList<>(), VariantNode.createRootVariant(symbolOrder),
+            symbolOrder, List.of(new Variant(attributes)), parts);
+
+        List<VariantNode<Part>> leafs = tree.getLeafNodes();
+        assertEquals(1, leafs.size());
+        assertEquals(new Variant(attributes), leafs.get(0).getVariant());
+        assertTrue(leafs.get(0).toString().endsWith("-> [Part 1]"));
+
+        int[] visits = new int[2];
+        tree.accept((node, depth, lastChild) -> {
+            assertTrue(lastChild);
+            visits[0]++;
+            visits[1] = Math.max(visits[1], depth);
+        });
+        assertArrayEquals(new int[]{groups + 1, groups}, visits);
+
+        Iterator<VariantNode<Part>> nodes = tree.nodeIterator();
+        assertSame(tree, nodes.next());
+        assertSame(tree, nodes.next().getParent());
+        Iterator<VariantNode<Part>> leafIterator = tree.leafIterator();
+        assertSame(leafs.get(0), leafIterator.next());
+        assertFalse(leafIterator.hasNext());
+        assertThrows(NoSuchElementException.class, leafIterator::next);
+    }
 }